@@ -0,0 +1,266 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A tour stored as the direction of each of its moves, 3 bits a move, so
+ * a tour of a million squares takes about 375 KB. The file starts with
+ * the board, its blocked squares, the piece and the starting square,
+ * followed by the number of moves and the packed directions, 8 moves to
+ * every 3 bytes with the first move in the lowest bits. A tour is only
+ * read back if every move stays on the usable squares and no square is
+ * visited twice.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class CompactTour {
+	/* marks the start of a compact tour, "KTR4" */
+	private static final int MAGIC = 0x4B545234;
+
+	/* Private variables for CompactTour */
+	private int rows;	// the number of rows of the board
+	private int cols;	// the number of columns of the board
+	private boolean[] blocked;	// the squares that can't be used, null if every square is usable
+	private int longLeg;	// the longer leg of the piece's leap
+	private int shortLeg;	// the shorter leg of the piece's leap
+	private int start;	// the starting square, x*cols+y
+	private byte[] directions;	// the clockwise direction, 0 to 7, of each move
+
+	/**
+	 * Wraps a tour
+	 *
+	 * @param graph - the board shape and the piece's moves
+	 * @param start - the starting square, x*cols+y
+	 * @param directions - the clockwise direction of each move
+	 *
+	 */
+	public CompactTour(MoveGraph graph, int start, byte[] directions) {
+		this(graph.getRows(), graph.getCols(), graph.getBlocked(), graph.getLongLeg(), graph.getShortLeg(), start,
+				directions);
+	}
+
+	/**
+	 * Wraps a tour read back from a stream
+	 *
+	 * @param rows - the number of rows of the board
+	 * @param cols - the number of columns of the board
+	 * @param blocked - the squares that can't be used, null if every square is usable
+	 * @param longLeg - the longer leg of the leap
+	 * @param shortLeg - the shorter leg of the leap
+	 * @param start - the starting square, x*cols+y
+	 * @param directions - the clockwise direction of each move
+	 *
+	 */
+	private CompactTour(int rows, int cols, boolean[] blocked, int longLeg, int shortLeg, int start, byte[] directions) {
+		this.rows = rows;
+		this.cols = cols;
+		this.blocked = blocked;
+		this.longLeg = longLeg;
+		this.shortLeg = shortLeg;
+		this.start = start;
+		this.directions = directions;
+	}
+
+	/**
+	 * Writes the tour, leaving the stream open
+	 *
+	 * @param out - the stream to write to
+	 * @throws IOException if the stream fails
+	 *
+	 */
+	public void write(OutputStream out) throws IOException {
+		write(out, rows, cols, blocked, longLeg, shortLeg, start, ByteBuffer.wrap(directions), directions.length);
+	}
+
+	/**
+	 * Writes a tour straight from a buffer, which may be off the heap, so
+	 * the tour never has to be copied into an array first. Only the lowest
+	 * 3 bits of each byte are written, the rest are free for the caller.
+	 *
+	 * @param out - the stream to write to, left open
+	 * @param graph - the board shape and the piece's moves
+	 * @param start - the starting square, x*cols+y
+	 * @param directions - the clockwise direction of each move, from index 0
+	 * @param length - the number of moves
+	 * @throws IOException if the stream fails
+	 *
+	 */
+	public static void write(OutputStream out, MoveGraph graph, int start, ByteBuffer directions, int length)
+			throws IOException {
+		write(out, graph.getRows(), graph.getCols(), graph.getBlocked(), graph.getLongLeg(), graph.getShortLeg(), start,
+				directions, length);
+	}
+
+	/**
+	 * Writes the header and packs the directions, 8 moves to every 3 bytes
+	 *
+	 * @param out - the stream to write to, left open
+	 * @param rows - the number of rows of the board
+	 * @param cols - the number of columns of the board
+	 * @param blocked - the squares that can't be used, null if every square is usable
+	 * @param longLeg - the longer leg of the leap
+	 * @param shortLeg - the shorter leg of the leap
+	 * @param start - the starting square, x*cols+y
+	 * @param directions - the clockwise direction of each move, from index 0
+	 * @param length - the number of moves
+	 * @throws IOException if the stream fails
+	 *
+	 */
+	private static void write(OutputStream out, int rows, int cols, boolean[] blocked, int longLeg, int shortLeg,
+			int start, ByteBuffer directions, int length) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		int bits = 0;	// directions not written yet, lowest first
+		int count = 0;	// the number of bits held in bits
+
+		data.writeInt(MAGIC);
+		data.writeInt(rows);
+		data.writeInt(cols);
+		MoveGraph.writeBlocked(data, blocked);
+		data.writeInt(longLeg);
+		data.writeInt(shortLeg);
+		data.writeInt(start);
+		data.writeInt(length);
+
+		for(int index = 0; index < length; index++) {
+			bits |= (directions.get(index) & 7) << count;
+			count += 3;
+			if(count >= 8) {
+				data.write(bits);
+				bits >>>= 8;
+				count -= 8;
+			}
+		}
+		if(count > 0) {
+			data.write(bits);
+		}
+		data.flush();
+	}
+
+	/**
+	 * Reads a tour written by write
+	 *
+	 * @param in - the stream to read from
+	 * @return the tour
+	 * @throws IOException if the stream fails or doesn't hold a compact tour of its board
+	 *
+	 */
+	public static CompactTour read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+		int rows;
+		int cols;
+		boolean[] blocked;
+		int longLeg;
+		int shortLeg;
+		int start;
+		int length;
+		byte[] directions;
+		int bits = 0;
+		int count = 0;
+		CompactTour retVal;
+
+		if(data.readInt() != MAGIC) {
+			throw new IOException("not a compact tour");
+		}
+		rows = data.readInt();
+		cols = data.readInt();
+		if(rows < 1 || cols < 1 || (long) rows * cols > Integer.MAX_VALUE) {
+			throw new IOException("not a compact tour");
+		}
+		blocked = MoveGraph.readBlocked(data, rows * cols);
+		longLeg = data.readInt();
+		shortLeg = data.readInt();
+		start = data.readInt();
+		length = data.readInt();
+		if(length < 0 || length >= rows * cols) {
+			throw new IOException("not a compact tour");
+		}
+		directions = new byte[length];
+
+		for(int index = 0; index < directions.length; index++) {
+			if(count < 3) {
+				bits |= data.readUnsignedByte() << count;
+				count += 8;
+			}
+			directions[index] = (byte) (bits & 7);
+			bits >>>= 3;
+			count -= 3;
+		}
+
+		retVal = new CompactTour(rows, cols, blocked, longLeg, shortLeg, start, directions);
+		if(!retVal.isPath()) {
+			throw new IOException("the compact tour leaves its board or visits a square twice");
+		}
+		return retVal;
+	}
+
+	/**
+	 * Checks that the tour starts on a usable square and every move lands
+	 * on a usable square not visited before
+	 *
+	 * @return true if the piece can take the tour on its board
+	 *
+	 */
+	private boolean isPath() {
+		MoveGraph graph;
+		boolean[] visited = new boolean[rows*cols];
+		int square = start;
+
+		try {
+			graph = getGraph();
+		} catch(IllegalArgumentException e) {
+			// legs that no piece has
+			return false;
+		}
+		if(start < 0 || start >= visited.length || graph.isBlocked(start)) {
+			return false;
+		}
+		visited[start] = true;
+		for(byte dir : directions) {
+			square = graph.target(square, dir);
+			if(square < 0 || visited[square]) {
+				return false;
+			}
+			visited[square] = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the board, mask and piece of the tour
+	 *
+	 * @return a new move graph for the tour's board
+	 *
+	 */
+	public MoveGraph getGraph() {
+		if(blocked != null) {
+			return new MoveGraph(rows, cols, longLeg, shortLeg, blocked);
+		}
+		return new MoveGraph(rows, cols, longLeg, shortLeg);
+	}
+
+	/**
+	 * get the starting square of the tour
+	 *
+	 * @return start - x*cols+y
+	 *
+	 */
+	public int getStart() {
+		return start;
+	}
+
+	/**
+	 * get the direction of each move of the tour
+	 *
+	 * @return directions - 0 to 7, clockwise
+	 *
+	 */
+	public byte[] getDirections() {
+		return directions;
+	}
+}
@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/**
+ * A fixed size table of search states already proven to lead to no tour,
+ * so that an exhaustive search reaching the same state again by another
+ * move order can give up on it at once. A state is the set of visited
+ * squares, at most 64 of them in a long, together with the square the
+ * piece is on, and is looked up by its 64-bit Zobrist key. Both the key
+ * and the visited set have to match, so a stored state is never mistaken
+ * for another one.
+ *
+ * The table is split into buckets of two entries. A new state that lands
+ * in a full bucket replaces one of the entries already there, chosen by
+ * the replacement policy.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class DeadStateTable {
+	/* enumeration for how a full bucket makes room for a new state */
+	enum Replacement {
+		ALWAYS,	// the new state is kept, the older of the two is dropped
+		DEPTH	// the state with the fewest visited squares, the largest proof, is always kept
+	}
+
+	/* bytes used by each entry, a key and a visited set */
+	public static final int ENTRY_BYTES = 16;
+
+	/* Private variables for DeadStateTable */
+	private Replacement replacement;	// how a full bucket makes room
+	private long[] keys;	// the Zobrist key of each entry
+	private long[] sets;	// the visited squares of each entry, 0 for an empty entry
+	private int bucketMask;	// the number of buckets less one, a power of two less one
+
+	/**
+	 * Builds an empty table that uses at most the given memory
+	 *
+	 * @param memoryBytes - the most memory the entries may take up, at least one bucket is made
+	 * @param replacement - how a full bucket makes room for a new state
+	 *
+	 */
+	public DeadStateTable(long memoryBytes, Replacement replacement) {
+		long buckets = Long.highestOneBit(Math.max(memoryBytes / (2*ENTRY_BYTES), 1));
+
+		// the arrays are indexed by int
+		buckets = Math.min(buckets, 1L << 29);
+
+		this.replacement = replacement;
+		bucketMask = (int) buckets - 1;
+		keys = new long[(int) buckets * 2];
+		sets = new long[(int) buckets * 2];
+	}
+
+	/**
+	 * Checks whether a state has been stored
+	 *
+	 * @param key - the Zobrist key of the state
+	 * @param set - the visited squares of the state
+	 * @return true if the state is known to lead to no tour
+	 *
+	 */
+	public boolean contains(long key, long set) {
+		int slot = ((int) key & bucketMask) << 1;
+
+		return (keys[slot] == key && sets[slot] == set) || (keys[slot+1] == key && sets[slot+1] == set);
+	}
+
+	/**
+	 * Stores a state that leads to no tour. The first entry of a bucket
+	 * holds the state the policy prefers and the second the one that is
+	 * dropped next, so whatever the policy only the second entry is ever
+	 * overwritten.
+	 *
+	 * @param key - the Zobrist key of the state
+	 * @param set - the visited squares of the state, not empty
+	 * @return true if a stored state had to be dropped to make room
+	 *
+	 */
+	public boolean add(long key, long set) {
+		int slot = ((int) key & bucketMask) << 1;
+		boolean retVal = sets[slot+1] != 0;
+
+		if(sets[slot] == 0) {
+			// an empty bucket
+			keys[slot] = key;
+			sets[slot] = set;
+			return false;
+		}
+
+		if(replacement == Replacement.ALWAYS || Long.bitCount(set) <= Long.bitCount(sets[slot])) {
+			// the new state takes the first entry, the old first entry moves down
+			keys[slot+1] = keys[slot];
+			sets[slot+1] = sets[slot];
+			keys[slot] = key;
+			sets[slot] = set;
+		} else {
+			keys[slot+1] = key;
+			sets[slot+1] = set;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Drops every stored state
+	 *
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0L);
+		Arrays.fill(sets, 0L);
+	}
+
+	/**
+	 * get the number of states the table can hold
+	 *
+	 * @return the number of entries
+	 *
+	 */
+	public int getCapacity() {
+		return keys.length;
+	}
+}
@@ -0,0 +1,244 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Solves the Knight's Tour from every starting square of a board in one
+ * run. The board's 8 rotations and reflections split the squares into
+ * classes, and a tour from one square of a class, rotated or reflected,
+ * is a tour from each of the others. So only one representative of each
+ * class is searched, on a pool of threads, and its tour is mapped onto
+ * the other squares of the class. The search itself is not symmetric,
+ * as the candidates are tried in clockwise order, so the attempted moves
+ * are only known for the representatives.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class KnightBatch {
+	/* Private variables for KnightBatch */
+	private int hType;	// the heuristic type passed to each KnightBoard
+	private int boardSize;	// the size of one dimension of the board
+	private MoveGraph graph;	// the board's moves and symmetries
+	private int threads;	// the number of start squares searched at once
+	private int[] representative;	// the square each square's tour is mapped from
+	private int[] symmetry;	// the symmetry taking the representative onto each square
+	private boolean[] success;	// whether a tour was found from each representative
+	private long[] attemptedMoves;	// attempted moves of the search from each representative
+	private int[][] tours;	// move numbers of each representative's tour, x*boardSize+y
+	private int searches;	// the number of representatives searched
+
+	/**
+	 * Sets up a batch run over every square of a board
+	 *
+	 * @param hType - the heuristic type, as given to KnightBoard
+	 * @param boardSize - the size of one dimension of the board
+	 * @param threads - the number of start squares searched at once
+	 *
+	 */
+	public KnightBatch(int hType, int boardSize, int threads) {
+		this.hType = hType;
+		this.boardSize = boardSize;
+		this.threads = threads;
+		graph = MoveGraph.knight(boardSize);
+	}
+
+	/**
+	 * Searches from one representative of every symmetry class
+	 *
+	 * @throws InterruptedException if interrupted while waiting for the searches
+	 *
+	 */
+	public void run() throws InterruptedException {
+		int maxMoves = boardSize*boardSize;
+		List<Integer> work = new ArrayList<Integer>();
+		List<Future<KnightBoard>> results = new ArrayList<Future<KnightBoard>>();
+		ExecutorService pool;
+
+		representative = new int[maxMoves];
+		symmetry = new int[maxMoves];
+		success = new boolean[maxMoves];
+		attemptedMoves = new long[maxMoves];
+		tours = new int[maxMoves][];
+		findRepresentatives(work);
+		searches = work.size();
+
+		// search the representatives in parallel
+		pool = Executors.newFixedThreadPool(threads);
+		try {
+			for(int square : work) {
+				int xPos = square / boardSize;
+				int yPos = square % boardSize;
+				results.add(pool.submit(() -> {
+					KnightBoard board = new KnightBoard(hType, boardSize);
+					success[square] = board.runKnightBoard(xPos, yPos);
+					return board;
+				}));
+			}
+
+			for(int index = 0; index < work.size(); index++) {
+				int square = work.get(index);
+				KnightBoard board = results.get(index).get();
+				attemptedMoves[square] = board.getAttemptedMoves();
+				if(success[square]) {
+					tours[square] = new int[maxMoves];
+					for(int target = 0; target < maxMoves; target++) {
+						tours[square][target] = board.getMoveNum(target / boardSize, target % boardSize);
+					}
+				}
+			}
+		} catch(ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Returns whether a tour was found from a starting square
+	 *
+	 * @param xPos - the x coordinate of the starting square
+	 * @param yPos - the y coordinate of the starting square
+	 * @return true if a tour was found
+	 *
+	 */
+	public boolean isSolved(int xPos, int yPos) {
+		return success[representative[xPos*boardSize + yPos]];
+	}
+
+	/**
+	 * Returns whether a starting square was searched, rather than having
+	 * its tour mapped from its representative
+	 *
+	 * @param xPos - the x coordinate of the starting square
+	 * @param yPos - the y coordinate of the starting square
+	 * @return true if the square is the representative of its class
+	 *
+	 */
+	public boolean isSearched(int xPos, int yPos) {
+		return representative[xPos*boardSize + yPos] == xPos*boardSize + yPos;
+	}
+
+	/**
+	 * Returns the attempted moves of the search from a starting square.
+	 * A search from a mapped square would try its candidates in another
+	 * order, so it has no count.
+	 *
+	 * @param xPos - the x coordinate of the starting square
+	 * @param yPos - the y coordinate of the starting square
+	 * @return the number of attempted moves, or -1 if the square wasn't searched
+	 *
+	 */
+	public long getAttemptedMoves(int xPos, int yPos) {
+		return isSearched(xPos, yPos) ? attemptedMoves[xPos*boardSize + yPos] : -1;
+	}
+
+	/**
+	 * Returns the number of squares that were actually searched
+	 *
+	 * @return one per symmetry class
+	 *
+	 */
+	public int getSearches() {
+		return searches;
+	}
+
+	/**
+	 * Returns the tour from a starting square, mapped from the tour of its
+	 * representative
+	 *
+	 * @param xPos - the x coordinate of the starting square
+	 * @param yPos - the y coordinate of the starting square
+	 * @return the move number of every square as [x][y], or null if there is no tour
+	 *
+	 */
+	public int[][] getTour(int xPos, int yPos) {
+		int square = xPos*boardSize + yPos;
+		int[] source = tours[representative[square]];
+		int[][] retVal;
+
+		if(source == null) {
+			return null;
+		}
+
+		retVal = new int[boardSize][boardSize];
+		for(int index = 0; index < source.length; index++) {
+			int target = graph.transform(symmetry[square], index);
+			retVal[target / boardSize][target % boardSize] = source[index];
+		}
+		return retVal;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 *
+	 */
+	public String toString() {
+		StringBuilder retString = new StringBuilder();
+		int width = 1;
+
+		// widest cell, plus room for the failure marker
+		for(long moves : attemptedMoves) {
+			width = Math.max(width, Long.toString(moves).length());
+		}
+		width++;
+
+		retString.append("Attempted moves by starting square (* = no tour found, "
+				+ "- = not searched, tour mapped by symmetry)\n");
+		retString.append(String.format("%3s", ""));
+		for(int yIndex = 0; yIndex < boardSize; yIndex++) {
+			retString.append(String.format(" %" + width + "d", yIndex));
+		}
+		retString.append("\n");
+
+		for(int xIndex = 0; xIndex < boardSize; xIndex++) {
+			retString.append(String.format("%3d", xIndex));
+			for(int yIndex = 0; yIndex < boardSize; yIndex++) {
+				String cell = (isSearched(xIndex, yIndex) ? Long.toString(getAttemptedMoves(xIndex, yIndex)) : "-")
+						+ (isSolved(xIndex, yIndex) ? "" : "*");
+				retString.append(String.format(" %" + width + "s", cell));
+			}
+			retString.append("\n");
+		}
+
+		retString.append(searches + " of " + boardSize*boardSize + " starting squares searched, "
+				+ "the rest mapped by symmetry\n");
+		return retString.toString();
+	}
+
+	/**
+	 * Assigns every square to the lowest numbered square of its symmetry
+	 * class, and records which symmetry maps the representative onto it
+	 *
+	 * @param work - the list the representatives are added to
+	 *
+	 */
+	private void findRepresentatives(List<Integer> work) {
+		int maxMoves = boardSize*boardSize;
+
+		for(int square = 0; square < maxMoves; square++) {
+			representative[square] = -1;
+		}
+
+		for(int square = 0; square < maxMoves; square++) {
+			if(representative[square] >= 0) {
+				continue;
+			}
+
+			// the lowest unassigned square starts a new class
+			work.add(square);
+			for(int sym = 0; sym < MoveGraph.SYMMETRIES; sym++) {
+				int image = graph.transform(sym, square);
+				if(representative[image] < 0) {
+					representative[image] = square;
+					symmetry[image] = sym;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,1140 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bitboard engine for the Knight's Tour on boards of up to 8x8 squares.
+ * Occupancy of the whole board is kept in a single long, with square
+ * (x,y) stored in bit x*8+y, and the piece's moves from each square are
+ * copied once from the board's move graph into both an attack mask and a
+ * clockwise move list.
+ * The search visits squares in exactly the same order as the Position
+ * based search in KnightBoard, so the tours and attempted move counts
+ * it produces are identical.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class KnightBitboard implements KnightSearchEngine {
+	/* the largest board dimension that fits in a single long */
+	public static final int MAX_SIZE = 8;
+
+	/* row stride of the bitboard, independent of the board size */
+	private static final int STRIDE = 8;
+
+	/* the cancel flag is polled once every POLL_MASK+1 attempted moves, and when the budget runs out */
+	private static final long POLL_MASK = 0xFFF;
+
+	/* states with fewer unvisited squares are cheaper to search again than to look up */
+	private static final int MEMO_MIN_REMAINING = 14;
+
+	/* Zobrist keys of every square being visited, and of the piece standing on it */
+	private static final long[] SQUARE_KEYS = new long[STRIDE*STRIDE];
+	private static final long[] HEAD_KEYS = new long[STRIDE*STRIDE];
+
+	static {
+		// a fixed seed, so runs are repeatable
+		Random keys = new Random(0x6B6E69676874L);
+
+		for(int square = 0; square < STRIDE*STRIDE; square++) {
+			SQUARE_KEYS[square] = keys.nextLong();
+			HEAD_KEYS[square] = keys.nextLong();
+		}
+	}
+
+	/* Private variables for KnightBitboard */
+	private KnightBoard.Heuristic type;	// the heuristic being used by this board
+	private MoveGraph graph;	// the board shape and the piece's moves
+	private int rows;	// the number of rows of the board
+	private int cols;	// the number of columns of the board
+	private int maxMoves;	// the number of squares on the board
+	private long[] attacks;	// mask of the squares a knight's move away from each square
+	private int[] moveOrder;	// 8 target squares per square in clockwise order, -1 if off the board
+	private int[] borderDist;	// distance from each square to the nearest edges
+	private long occupied;	// one bit set for every visited square
+	private int[] path;	// the square visited at each move
+	private long[] pending;	// untried unvisited targets at each move, no heuristic only
+	private int[] cand;	// 8 candidate squares per move, in the order they will be tried
+	private int[] candCount;	// the number of candidates at each move
+	private int[] candNext;	// the index of the next candidate to try at each move
+	private int[] sortKey;	// scratch heuristic keys for the candidates being ordered
+	private long[] tieKey;	// scratch tie-break keys for candidates of equal degree
+	private KnightBoard.TieBreak tieBreak;	// how Warnsdorff orders candidates of equal degree
+	private Random random;	// the tie-break order of the random policy
+	private long ties;	// moves where more than one candidate had the lowest degree
+	private long backtracks;	// moves taken back because a square ran out of candidates
+	private int depth;	// the number of squares on the current path
+	private long attemptedMoves;	// the number of moves attempted to complete the tour
+	private AtomicBoolean cancel;	// raised by another thread to stop the search
+	private SearchControl control;	// the budget and deadline of the run, null for none
+	private SearchProgress progress;	// where the run reports its progress, null for nowhere
+	private long charged;	// attempted moves already charged to the control
+	private long nextPoll;	// the attempted moves at the next poll
+	private long published;	// attempted moves already reported to the progress
+	private int deepest;	// the longest path of the run
+	private long[] backtrackAt;	// backtracks since the last report, by the path length taken back from
+	private File checkpointFile;	// where the state of the run is saved, null for nowhere
+	private long checkpointInterval;	// nanoseconds between checkpoints
+	private long nextCheckpoint;	// System.nanoTime() at which the next checkpoint is due
+	private boolean closed;	// only accept tours that end a knight's move from the start
+	private long ends;	// the start's neighbours, the squares a closed tour may end on
+	private long boardMask;	// one bit set for every square on the board
+	private int[] shiftBy;	// bit shift of each clockwise move, negative to shift right
+	private long[] shiftMask;	// squares whose move in each direction stays in their row band
+	private boolean prune;	// abandon paths that strand an unvisited square
+	private int floodInterval;	// path lengths between connectivity checks, 0 for none
+	private long prunedMoves;	// moves abandoned by the pruning checks
+	private long memoBytes;	// the most memory the dead state table may use, 0 for none
+	private DeadStateTable.Replacement replacement;	// how the table makes room for new states
+	private DeadStateTable memo;	// states proven to lead to no tour, built on first use
+	private int memoStart;	// the starting square of the states in the table
+	private long memoHits;	// states abandoned because the table held them
+	private long memoMisses;	// states looked up and not found
+	private long memoEvictions;	// stored states dropped to make room
+	private int floor;	// the level below which the last run never backtracks
+	private boolean resumed;	// the last run has gone on past a tour it found
+
+	/**
+	 * Builds the attack masks and move lists for a board
+	 *
+	 * @param type - the heuristic to search with
+	 * @param graph - the board shape and the piece's moves, at most MAX_SIZE each way
+	 *
+	 */
+	public KnightBitboard(KnightBoard.Heuristic type, MoveGraph graph) {
+		if(!fits(graph)) {
+			throw new IllegalArgumentException("a " + graph.getRows() + "x" + graph.getCols()
+					+ " board does not fit in a bitboard");
+		}
+
+		this.type = type;
+		this.graph = graph;
+		rows = graph.getRows();
+		cols = graph.getCols();
+		maxMoves = graph.getSize();
+		attacks = new long[STRIDE*STRIDE];
+		moveOrder = new int[STRIDE*STRIDE*8];
+		borderDist = new int[STRIDE*STRIDE];
+		path = new int[maxMoves];
+		pending = new long[maxMoves];
+		cand = new int[maxMoves*8];
+		candCount = new int[maxMoves];
+		candNext = new int[maxMoves];
+		sortKey = new int[8];
+		tieKey = new long[8];
+		shiftBy = new int[8];
+		shiftMask = new long[8];
+		tieBreak = KnightBoard.TieBreak.LOWEST;
+
+		initMoves();
+	}
+
+	/**
+	 * Checks whether a board fits in a single long. A board with blocked
+	 * squares is left to KnightSearch, as the bitboard's move masks and
+	 * dead state keys assume every square is usable.
+	 *
+	 * @param graph - the board shape and the piece's moves
+	 * @return true if both sides are at most MAX_SIZE and no square is blocked
+	 *
+	 */
+	public static boolean fits(MoveGraph graph) {
+		return graph.getRows() <= MAX_SIZE && graph.getCols() <= MAX_SIZE && !graph.hasMask();
+	}
+
+	/**
+	 * Runs the tour from the given starting square
+	 *
+	 * @param xPos - starting x position
+	 * @param yPos - starting y position
+	 * @return false for failure, true for success
+	 *
+	 */
+	public boolean runKnightBoard(int xPos, int yPos) {
+		reset();
+		attemptedMoves++;
+		place(square(xPos, yPos));
+		prepareMemo();
+		floor = 0;
+
+		if(graph.isConfined()) {
+			// the piece never leaves its own share of the squares
+			return false;
+		}
+		if(closed && maxMoves % 2 != 0 && graph.alternatesColour()) {
+			// every move changes colour, so an odd board can't close
+			return false;
+		}
+		return finish(search(0, 0, null));
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightSearchEngine#expand(int, int, java.util.List)
+	 */
+	public boolean expand(int start, int splitDepth, List<int[]> prefixes) {
+		reset();
+		attemptedMoves++;
+		place(start);
+
+		if(graph.isConfined()) {
+			// the piece never leaves its own share of the squares
+			return false;
+		}
+		if(closed && maxMoves % 2 != 0 && graph.alternatesColour()) {
+			// every move changes colour, so an odd board can't close
+			return false;
+		}
+		if(splitDepth <= 1) {
+			prefixes.add(new int[] {start});
+			return false;
+		}
+		return finish(search(0, splitDepth, prefixes));
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightSearchEngine#runFrom(int[])
+	 */
+	public boolean runFrom(int[] prefix) {
+		reset();
+		for(int index = 0; index < prefix.length; index++) {
+			place(prefix[index]);
+		}
+		prepareMemo();
+		floor = depth-1;
+
+		if(depth == maxMoves) {
+			return finish(true);
+		}
+		return finish(search(depth-1, 0, null));
+	}
+
+	/**
+	 * Goes on with the last run past the tour it found, to the next tour
+	 * in search order. Attempted moves keep adding up from the last run.
+	 * Squares left unfinished by a tour can't be proven dead, so the dead
+	 * state table stops taking new states.
+	 *
+	 * @return false once there are no more tours
+	 *
+	 */
+	public boolean nextTour() {
+		if(depth < maxMoves || depth-1 <= floor) {
+			return false;
+		}
+
+		resumed = true;
+		occupied &= ~(1L << path[depth-1]);
+		depth--;
+		return finish(search(floor, 0, null));
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightSearchEngine#resume(SearchCheckpoint)
+	 */
+	public boolean resume(SearchCheckpoint state) {
+		int[] squares = state.getPath();
+		byte[] next = state.getNext();
+		long[] counters = state.getCounters();
+
+		if(!state.fits(graph, type, closed, prune, floodInterval, tieBreak)) {
+			throw new IllegalArgumentException("the checkpoint is for another board or search");
+		}
+
+		// replaying the path rebuilds the candidates of every square
+		reset();
+		for(int level = 0; level < squares.length; level++) {
+			int square = square(squares[level] / graph.getCols(), squares[level] % graph.getCols());
+			place(square);
+			candNext[level] = next[level];
+
+			// without a heuristic the targets already tried leave the mask
+			if(type == KnightBoard.Heuristic.NO_HEUR) {
+				for(int index = 0; index < next[level]; index++) {
+					int target = moveOrder[square*8 + index];
+					if(target >= 0) {
+						pending[level] &= ~(1L << target);
+					}
+				}
+			}
+		}
+		attemptedMoves = counters[0];
+		ties = counters[1];
+		backtracks = counters[2];
+		prunedMoves = counters[3];
+		charged = attemptedMoves;
+		published = attemptedMoves;
+		prepareMemo();
+		floor = 0;
+
+		if(depth == maxMoves) {
+			return finish(true);
+		}
+		return finish(search(0, 0, null));
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightSearchEngine#setCheckpoint(java.io.File, long)
+	 */
+	public void setCheckpoint(File file, long intervalMillis) {
+		checkpointFile = file;
+		checkpointInterval = intervalMillis * 1000000L;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getDirections()
+	 */
+	public byte[] getDirections() {
+		byte[] retVal = new byte[Math.max(depth-1, 0)];
+
+		for(int index = 0; index < retVal.length; index++) {
+			int dir = 0;
+			while(moveOrder[path[index]*8 + dir] != path[index+1]) {
+				dir++;
+			}
+			retVal[index] = (byte) dir;
+		}
+		return retVal;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setCancelFlag(java.util.concurrent.atomic.AtomicBoolean)
+	 */
+	public void setCancelFlag(AtomicBoolean cancel) {
+		this.cancel = cancel;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setControl(SearchControl)
+	 */
+	public void setControl(SearchControl control) {
+		this.control = control;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setProgress(SearchProgress)
+	 */
+	public void setProgress(SearchProgress progress) {
+		this.progress = progress;
+		backtrackAt = progress != null ? new long[maxMoves+1] : null;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setTieBreak(KnightBoard.TieBreak, long)
+	 */
+	public void setTieBreak(KnightBoard.TieBreak tieBreak, long seed) {
+		this.tieBreak = tieBreak;
+		random = new Random(seed);
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setPruning(boolean, int)
+	 */
+	public void setPruning(boolean prune, int floodInterval) {
+		this.prune = prune;
+		this.floodInterval = floodInterval;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setMemo(long, DeadStateTable.Replacement)
+	 */
+	public void setMemo(long memoryBytes, DeadStateTable.Replacement replacement) {
+		memoBytes = memoryBytes;
+		this.replacement = replacement;
+		memo = null;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setClosed(boolean)
+	 */
+	public void setClosed(boolean closed) {
+		this.closed = closed;
+		memo = null;
+	}
+
+	/**
+	 * get attempted move count for use outside the KnightBitboard object
+	 *
+	 * @return attemptedMoves - the number of moves it took to get a solution.
+	 *
+	 */
+	public long getAttemptedMoves() {
+		return attemptedMoves;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getPrunedMoves()
+	 */
+	public long getPrunedMoves() {
+		return prunedMoves;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getMemoHits()
+	 */
+	public long getMemoHits() {
+		return memoHits;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getMemoMisses()
+	 */
+	public long getMemoMisses() {
+		return memoMisses;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getMemoEvictions()
+	 */
+	public long getMemoEvictions() {
+		return memoEvictions;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getTies()
+	 */
+	public long getTies() {
+		return ties;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getBacktracks()
+	 */
+	public long getBacktracks() {
+		return backtracks;
+	}
+
+	/**
+	 * Retrieves the move number at which the tour reached a square
+	 *
+	 * @param xPos - the x coordinate of the square
+	 * @param yPos - the y coordinate of the square
+	 * @return the move number, or 0 if the square is not on the current path
+	 *
+	 */
+	public int getMoveNum(int xPos, int yPos) {
+		int square = square(xPos, yPos);
+
+		for(int index = 0; index < depth; index++) {
+			if(path[index] == square) {
+				return index+1;
+			}
+		}
+		return 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#square(int, int)
+	 */
+	public int square(int xPos, int yPos) {
+		return xPos*STRIDE + yPos;
+	}
+
+	/**
+	 * Clears the board and counters before a run
+	 *
+	 */
+	private void reset() {
+		occupied = 0L;
+		depth = 0;
+		attemptedMoves = 0;
+		ties = 0;
+		backtracks = 0;
+		prunedMoves = 0;
+		memoHits = 0;
+		memoMisses = 0;
+		memoEvictions = 0;
+		resumed = false;
+		charged = 0;
+		published = 0;
+		deepest = 0;
+		nextCheckpoint = System.nanoTime() + checkpointInterval;
+	}
+
+	/**
+	 * Builds the dead state table on its first use. Whether a state leads
+	 * to an open tour doesn't depend on where the tour started, so the
+	 * table is kept from run to run, but a closed tour has to end next to
+	 * its start, so the table is cleared when the start changes.
+	 *
+	 */
+	private void prepareMemo() {
+		if(memoBytes <= 0 || type != KnightBoard.Heuristic.NO_HEUR) {
+			return;
+		}
+
+		if(memo == null) {
+			memo = new DeadStateTable(memoBytes, replacement);
+		} else if(closed && memoStart != path[0]) {
+			memo.clear();
+		}
+		memoStart = path[0];
+	}
+
+	/**
+	 * Runs the search loop for the selected heuristic from the current path
+	 *
+	 * @param floor - the level below which the search never backtracks
+	 * @param splitDepth - path length at which paths are recorded instead of searched, 0 for none
+	 * @param prefixes - the list recorded paths are added to
+	 * @return false for failure, true for success
+	 *
+	 */
+	private boolean search(int floor, int splitDepth, List<int[]> prefixes) {
+		if(type == KnightBoard.Heuristic.NO_HEUR) {
+			return visitNoHeur(floor, splitDepth, prefixes);
+		}
+
+		// with nothing to poll the loop never has to stop
+		nextPoll = watched() ? pollAt() : Long.MAX_VALUE;
+
+		while(depth < maxMoves) {
+			int top = depth-1;
+
+			if(candNext[top] < candCount[top]) {
+				// try the next candidate from the current square
+				attemptedMoves++;
+				place(cand[top*8 + candNext[top]++]);
+
+				if(closed && !canClose()) {
+					// this path can no longer get back to the start
+					occupied &= ~(1L << path[depth-1]);
+					depth--;
+				} else if(prune && !canFinish(~occupied, path[depth-1], depth)) {
+					// some unvisited square can no longer be reached
+					prunedMoves++;
+					occupied &= ~(1L << path[depth-1]);
+					depth--;
+				} else if(depth == splitDepth && depth < maxMoves) {
+					// record the path and leave its subtree to a worker
+					prefixes.add(copyPath());
+					occupied &= ~(1L << path[depth-1]);
+					depth--;
+				} else if(attemptedMoves == nextPoll && depth < maxMoves && poll()) {
+					return false;
+				}
+			} else {
+				// out of candidates, backtrack
+				if(top == floor) {
+					return false;
+				}
+				backtracks++;
+				if(backtrackAt != null) {
+					backtrackAt[depth]++;
+				}
+				occupied &= ~(1L << path[top]);
+				depth--;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Checks whether anything has to be done when the search polls.
+	 * Without anything the poll is never called and costs nothing.
+	 *
+	 * @return true if there is a cancel flag, control, progress or checkpoint
+	 *
+	 */
+	private boolean watched() {
+		return cancel != null || control != null || progress != null || checkpointFile != null;
+	}
+
+	/**
+	 * Reports progress, checks the cancel flag and charges the moves since
+	 * the last check to the control. Called every POLL_MASK+1 attempted
+	 * moves and when the budget runs out, see pollAt, so the search loops
+	 * themselves only count. A checkpoint is saved when one is due, and
+	 * always when the search is stopped, so it can be carried on later.
+	 *
+	 * @return true if the search should stop
+	 *
+	 */
+	private boolean poll() {
+		boolean retVal;
+
+		if(progress != null) {
+			report();
+		}
+		retVal = (cancel != null && cancel.get()) || (control != null && charge());
+
+		if(checkpointFile != null && (retVal || System.nanoTime() - nextCheckpoint >= 0)) {
+			saveCheckpoint();
+		}
+		nextPoll = pollAt();
+		return retVal;
+	}
+
+	/**
+	 * Works out the attempted moves at the next poll: the next multiple of
+	 * POLL_MASK+1, or sooner if the budget runs out first, so that a run
+	 * stops at exactly its budget
+	 *
+	 * @return the attempted moves at which to poll, always after the current count
+	 *
+	 */
+	private long pollAt() {
+		long retVal = (attemptedMoves | POLL_MASK) + 1;
+		long left = control != null ? control.getMovesLeft() : Long.MAX_VALUE;
+
+		// moves not yet charged already count against what is left
+		if(left < retVal - charged) {
+			retVal = Math.max(charged + left, attemptedMoves + 1);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Writes the current path, the next candidate at each of its squares
+	 * and the counters to the checkpoint file. The squares are saved in
+	 * the board's own layout, x*cols+y.
+	 *
+	 */
+	private void saveCheckpoint() {
+		int[] squares = new int[depth];
+		byte[] next = new byte[depth];
+		long[] counters = {attemptedMoves, ties, backtracks, prunedMoves};
+
+		for(int level = 0; level < depth; level++) {
+			squares[level] = graph.square(path[level] / STRIDE, path[level] % STRIDE);
+			next[level] = (byte) candNext[level];
+		}
+		try {
+			new SearchCheckpoint(graph, type, closed, prune, floodInterval, tieBreak, squares, next, counters)
+					.write(checkpointFile);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		nextCheckpoint = System.nanoTime() + checkpointInterval;
+	}
+
+	/**
+	 * Reports whatever the last checks didn't cover once the search has
+	 * ended, and counts the last moves toward the budget. The search is
+	 * over, so running past the budget here doesn't stop it.
+	 *
+	 * @param found - the result of the search
+	 * @return found
+	 *
+	 */
+	private boolean finish(boolean found) {
+		if(progress != null) {
+			report();
+		}
+		if(control != null) {
+			control.spend(attemptedMoves - charged);
+			charged = attemptedMoves;
+		}
+		return found;
+	}
+
+	/**
+	 * Hands the moves and backtracks since the last report to the progress.
+	 * The board has at most 64 squares, so the whole histogram is walked.
+	 * Every path that isn't a tour ends in a backtrack, so the longest
+	 * path is the longest length with backtracks, or the current path.
+	 *
+	 */
+	private void report() {
+		if(depth > deepest) {
+			deepest = depth;
+		}
+		for(int level = 1; level <= maxMoves; level++) {
+			if(backtrackAt[level] != 0) {
+				progress.addBacktracks(level, backtrackAt[level]);
+				backtrackAt[level] = 0;
+				deepest = Math.max(deepest, level);
+			}
+		}
+
+		progress.report(attemptedMoves - published, depth, deepest);
+		published = attemptedMoves;
+	}
+
+	/**
+	 * Charges the moves since the last charge to the control
+	 *
+	 * @return true if the control has stopped the run
+	 *
+	 */
+	private boolean charge() {
+		boolean retVal = control.charge(attemptedMoves - charged);
+
+		charged = attemptedMoves;
+		return retVal;
+	}
+
+	/**
+	 * Checks whether the current path can still end next to the start. The
+	 * last square has to be one of the start's neighbours, and before that
+	 * at least one of them has to be left unvisited for it.
+	 *
+	 * @return false if the path can't be finished as a closed tour
+	 *
+	 */
+	private boolean canClose() {
+		if(depth == maxMoves) {
+			return (ends & (1L << path[depth-1])) != 0;
+		}
+		return (ends & ~occupied) != 0;
+	}
+
+	/**
+	 * Checks whether the unvisited squares can still all be reached. The
+	 * number of unvisited neighbours of every square is counted at once, up
+	 * to two, by adding up the unvisited squares shifted by each of the 8
+	 * moves. A square with no unvisited neighbours is stranded unless it is
+	 * the only square left, and a square with one can only be the end of
+	 * the tour unless the knight can step onto it straight away, so there
+	 * can be at most one of them. Every floodInterval squares the unvisited
+	 * squares are also checked for being connected to the knight.
+	 *
+	 * @param free - the unvisited squares, bits off the board are ignored
+	 * @param head - the square the knight is on
+	 * @param length - the number of squares on the path
+	 * @return false if the path can't be finished as a tour
+	 *
+	 */
+	private boolean canFinish(long free, int head, int length) {
+		long unvisited = free & boardMask;
+		long ones = 0L;	// squares with at least one unvisited neighbour
+		long twos = 0L;	// squares with at least two
+		long single;
+
+		if((unvisited & (unvisited - 1)) == 0) {
+			return true;
+		}
+
+		for(int dir = 0; dir < 8; dir++) {
+			long moved = shift(unvisited, dir);
+			twos |= ones & moved;
+			ones |= moved;
+		}
+		if((unvisited & ~ones) != 0) {
+			return false;
+		}
+
+		// the knight can pass through a neighbour with one way out
+		single = unvisited & ~twos & ~attacks[head];
+		if((single & (single - 1)) != 0) {
+			return false;
+		}
+
+		if(floodInterval > 0 && length % floodInterval == 0) {
+			return flood(unvisited, head) == unvisited;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the unvisited squares reachable from a square through other
+	 * unvisited squares, growing the reached set by one move at a time
+	 *
+	 * @param unvisited - the unvisited squares
+	 * @param head - the square to start from
+	 * @return the unvisited squares reached
+	 *
+	 */
+	private long flood(long unvisited, int head) {
+		long reach = attacks[head] & unvisited;
+		long grown = reach;
+
+		do {
+			reach = grown;
+			for(int dir = 0; dir < 8; dir++) {
+				grown |= shift(reach, dir);
+			}
+			grown &= unvisited;
+		} while(grown != reach);
+
+		return reach;
+	}
+
+	/**
+	 * Moves every square of a set by one knight's move in a direction,
+	 * dropping squares the move would take off the board
+	 *
+	 * @param set - the squares to move
+	 * @param dir - the clockwise direction of the move
+	 * @return the squares reached
+	 *
+	 */
+	private long shift(long set, int dir) {
+		long masked = set & shiftMask[dir];
+
+		return shiftBy[dir] > 0 ? masked << shiftBy[dir] : masked >>> -shiftBy[dir];
+	}
+
+	/**
+	 * Tries the moves from every square in plain clockwise order. Each level
+	 * keeps a mask of the unvisited targets it has not tried yet, so a level
+	 * backtracks as soon as the mask is empty instead of scanning the rest
+	 * of its move list, and a target with no unvisited neighbours is counted
+	 * as an attempted move and a backtrack without being pushed at all.
+	 * With a dead state table, every level that runs out of targets stores
+	 * its state, keyed by the Zobrist keys of the visited squares and the
+	 * current square, and a target whose state is already stored is
+	 * skipped like a dead end. Only states with at least MEMO_MIN_REMAINING
+	 * unvisited squares are looked up or stored, and the tour found is the
+	 * same as without the table.
+	 *
+	 * @param floor - the level below which the search never backtracks
+	 * @param splitDepth - path length at which paths are recorded instead of searched, 0 for none
+	 * @param prefixes - the list recorded paths are added to
+	 * @return false for failure, true for success
+	 *
+	 */
+	private boolean visitNoHeur(int floor, int splitDepth, List<int[]> prefixes) {
+		long free = ~occupied;
+		int last = maxMoves-1;
+		int split = splitDepth-1;	// the level recorded paths end on
+		int top = depth-1;
+		long open = closed ? ends : -1L;	// squares that must stay reachable at the end
+		long count = attemptedMoves;
+		long undone = backtracks;
+		long pruned = prunedMoves;
+		DeadStateTable table = splitDepth == 0 && !resumed ? memo : null;	// recorded paths and found tours are not dead
+		int memoTop = maxMoves - MEMO_MIN_REMAINING - 1;	// the deepest level kept in the table
+		long hash = 0L;	// Zobrist key of the visited squares
+		long hits = memoHits;
+		long misses = memoMisses;
+		long evicted = memoEvictions;
+		long[] histogram = backtrackAt;	// backtracks by path length, null unless reported
+		boolean retVal = false;
+
+		// with nothing to poll the inner loop never has to stop
+		nextPoll = watched() ? pollAt() : Long.MAX_VALUE;
+
+		for(int level = 0; level <= top; level++) {
+			hash ^= SQUARE_KEYS[path[level]];
+		}
+
+		// the inner loop runs until the next poll, with no calls in it
+		search:
+		while(true) {
+			while(true) {
+				long left = pending[top];
+
+				if(left == 0) {
+					// every target tried or visited, backtrack
+					if(top == floor) {
+						break search;
+					}
+					undone++;
+					if(histogram != null) {
+						histogram[top+1]++;
+					}
+					if(table != null && top <= memoTop && table.add(hash ^ HEAD_KEYS[path[top]], ~free)) {
+						evicted++;
+					}
+					hash ^= SQUARE_KEYS[path[top]];
+					free |= 1L << path[top];
+					top--;
+					continue;
+				}
+
+				if(count == nextPoll) {
+					// time to poll, before the next move is counted
+					break;
+				}
+
+				// next unvisited target in clockwise order
+				int square = path[top];
+				int next = candNext[top];
+				int target;
+				do {
+					target = moveOrder[square*8 + next++];
+				} while(target < 0 || (left & (1L << target)) == 0);
+				candNext[top] = next;
+				pending[top] = left & ~(1L << target);
+				count++;
+
+				long onward = attacks[target] & free & ~(1L << target);
+				if(top+1 < last ? (open & free & ~(1L << target)) == 0 : (open & (1L << target)) == 0) {
+					// no way back to the start, nothing to push
+					continue;
+				}
+				if(top+1 < last && onward == 0) {
+					// dead end, counted as a backtrack from it without pushing it
+					undone++;
+					if(histogram != null) {
+						histogram[top+2]++;
+					}
+					continue;
+				}
+				if(prune && !canFinish(free & ~(1L << target), target, top+2)) {
+					// some unvisited square can no longer be reached
+					pruned++;
+					continue;
+				}
+				if(table != null && top+1 <= memoTop) {
+					if(table.contains(hash ^ SQUARE_KEYS[target] ^ HEAD_KEYS[target], ~free | 1L << target)) {
+						// already proven to lead nowhere
+						hits++;
+						continue;
+					}
+					misses++;
+				}
+
+				// move onto it
+				free &= ~(1L << target);
+				hash ^= SQUARE_KEYS[target];
+				top++;
+				path[top] = target;
+				if(top == last) {
+					retVal = true;
+					break search;
+				}
+				if(top == split) {
+					// record the path and leave its subtree to a worker
+					depth = top+1;
+					prefixes.add(copyPath());
+					free |= 1L << target;
+					hash ^= SQUARE_KEYS[target];
+					top--;
+					continue;
+				}
+				pending[top] = onward;
+				candNext[top] = 0;
+			}
+
+			// the poll and a checkpoint see the counts of the loop so far
+			depth = top+1;
+			occupied = ~free;
+			attemptedMoves = count;
+			backtracks = undone;
+			prunedMoves = pruned;
+			if(poll()) {
+				break;
+			}
+		}
+
+		depth = top+1;
+		occupied = ~free;
+		attemptedMoves = count;
+		backtracks = undone;
+		prunedMoves = pruned;
+		memoHits = hits;
+		memoMisses = misses;
+		memoEvictions = evicted;
+		return retVal;
+	}
+
+	/**
+	 * Moves the knight onto a square and prepares the candidates for its
+	 * next move, ordered by the selected heuristic. Attempted moves are
+	 * counted by the caller, so replayed paths are not counted twice.
+	 *
+	 * @param square - the square to move to
+	 *
+	 */
+	private void place(int square) {
+		int level = depth;
+		int base = level*8;
+		int count = 0;
+
+		occupied |= 1L << square;
+		path[level] = square;
+		if(level == 0) {
+			ends = attacks[square];
+		}
+		depth++;
+		candNext[level] = 0;
+
+		if(type == KnightBoard.Heuristic.NO_HEUR) {
+			pending[level] = attacks[square] & ~occupied;
+			return;
+		}
+
+		// collect unvisited targets in clockwise order
+		for(int dir = 0; dir < 8; dir++) {
+			int target = moveOrder[square*8 + dir];
+			if(target >= 0 && (occupied & (1L << target)) == 0) {
+				cand[base + count++] = target;
+			}
+		}
+		candCount[level] = count;
+
+		if(count < 2) {
+			return;
+		}
+
+		// heuristic key of every candidate, lower keys are tried first
+		switch (type) {
+		case BORDERS:
+			for(int index = 0; index < count; index++) {
+				sortKey[index] = borderDist[cand[base+index]];
+			}
+			break;
+		case WARNSDORFF:
+			for(int index = 0; index < count; index++) {
+				sortKey[index] = Long.bitCount(attacks[cand[base+index]] & ~occupied);
+			}
+			break;
+		default:
+			return;
+		}
+
+		// stable insertion sort keeps the lowest clockwise index first among ties
+		for(int index = 1; index < count; index++) {
+			int target = cand[base+index];
+			int key = sortKey[index];
+			int slot = index;
+			while(slot > 0 && sortKey[slot-1] > key) {
+				cand[base+slot] = cand[base+slot-1];
+				sortKey[slot] = sortKey[slot-1];
+				slot--;
+			}
+			cand[base+slot] = target;
+			sortKey[slot] = key;
+		}
+
+		if(type == KnightBoard.Heuristic.WARNSDORFF) {
+			breakTies(base, count);
+		}
+	}
+
+	/**
+	 * Counts a tie for the lowest degree, then reorders each run of
+	 * candidates with equal degree by the selected tie-break policy. The
+	 * lowest index policy leaves them in clockwise order.
+	 *
+	 * @param base - the index of the first candidate in cand
+	 * @param count - the number of candidates, sorted by degree
+	 *
+	 */
+	private void breakTies(int base, int count) {
+		int start = 0;
+
+		if(sortKey[0] == sortKey[1]) {
+			ties++;
+		}
+		if(tieBreak == KnightBoard.TieBreak.LOWEST) {
+			return;
+		}
+
+		while(start < count) {
+			int end = start+1;
+			while(end < count && sortKey[end] == sortKey[start]) {
+				end++;
+			}
+
+			if(end - start > 1) {
+				// stable insertion sort of the run on its tie-break keys
+				for(int index = start; index < end; index++) {
+					tieKey[index] = tieKey(cand[base+index]);
+				}
+				for(int index = start+1; index < end; index++) {
+					int target = cand[base+index];
+					long key = tieKey[index];
+					int slot = index;
+					while(slot > start && tieKey[slot-1] > key) {
+						cand[base+slot] = cand[base+slot-1];
+						tieKey[slot] = tieKey[slot-1];
+						slot--;
+					}
+					cand[base+slot] = target;
+					tieKey[slot] = key;
+				}
+			}
+			start = end;
+		}
+	}
+
+	/**
+	 * Computes the tie-break key of a candidate, lower keys are tried first
+	 *
+	 * @param target - the candidate square
+	 * @return the key under the selected tie-break policy
+	 *
+	 */
+	private long tieKey(int target) {
+		long retVal = 0;
+		long onward = attacks[target] & ~occupied;
+		long xDist;
+		long yDist;
+
+		switch (tieBreak) {
+		case POHL:
+			// a square whose neighbours are nearly cut off should be reached now
+			while(onward != 0) {
+				int next = Long.numberOfTrailingZeros(onward);
+				retVal += Long.bitCount(attacks[next] & ~occupied);
+				onward &= onward - 1;
+			}
+			break;
+		case ROTH:
+			// squared distance from the centre, in half squares, negated
+			xDist = 2*(target / STRIDE) - (rows-1);
+			yDist = 2*(target % STRIDE) - (cols-1);
+			retVal = -(xDist*xDist + yDist*yDist);
+			break;
+		case RANDOM:
+			retVal = random.nextInt();
+			break;
+		default:
+			break;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns a copy of the squares on the current path
+	 *
+	 * @return the path, starting square first
+	 *
+	 */
+	private int[] copyPath() {
+		int[] retVal = new int[depth];
+
+		System.arraycopy(path, 0, retVal, 0, depth);
+		return retVal;
+	}
+
+	/**
+	 * Copies the move graph into the attack masks, clockwise move lists and
+	 * border distances of the bitboard layout
+	 *
+	 */
+	private void initMoves() {
+		int[] moves = graph.getMoves();
+		int[] graphDist = graph.getBorderDist();
+
+		// moves of a whole bitboard at once, masking out columns that would wrap
+		for(int dir = 0; dir < 8; dir++) {
+			int yOffset = graph.getYOffset(dir);
+
+			shiftBy[dir] = graph.getXOffset(dir)*STRIDE + yOffset;
+			for(int xIndex = 0; xIndex < STRIDE; xIndex++) {
+				for(int yIndex = 0; yIndex < STRIDE; yIndex++) {
+					if(yIndex + yOffset >= 0 && yIndex + yOffset < STRIDE) {
+						shiftMask[dir] |= 1L << (xIndex*STRIDE + yIndex);
+					}
+				}
+			}
+		}
+
+		for(int xIndex = 0; xIndex < rows; xIndex++) {
+			for(int yIndex = 0; yIndex < cols; yIndex++) {
+				int from = graph.square(xIndex, yIndex);
+				int square = xIndex*STRIDE + yIndex;
+
+				boardMask |= 1L << square;
+				borderDist[square] = graphDist[from];
+				for(int dir = 0; dir < 8; dir++) {
+					int target = moves[from*8 + dir];
+
+					if(target >= 0) {
+						moveOrder[square*8 + dir] = square(target / cols, target % cols);
+						attacks[square] |= 1L << moveOrder[square*8 + dir];
+					} else {
+						moveOrder[square*8 + dir] = -1;
+					}
+				}
+			}
+		}
+	}
+}
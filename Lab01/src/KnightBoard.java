@@ -1,3 +1,11 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * Board to keep track of Knight's tour, as well as the 
  * functional code that determines the movements of the 
@@ -8,17 +16,59 @@
  */
 public class KnightBoard {
 	/* enumeration for Heuristic Type */
-	private enum Heuristic {
-		NO_HEUR, BORDERS, WARNSDORFF, ERROR
+	enum Heuristic {
+		NO_HEUR, BORDERS, WARNSDORFF, CONSTRUCTIVE, ERROR
+	}
+	
+	/* enumeration for how Warnsdorff's heuristic orders squares of equal degree */
+	enum TieBreak {
+		LOWEST,	// lowest clockwise index first
+		POHL,	// lowest sum of the degrees of the square's own neighbours first
+		ROTH,	// farthest from the centre of the board first
+		RANDOM	// seeded random order
+	}
+	
+	/* enumeration for how the last run ended */
+	enum Status {
+		SOLVED,	// a tour was found
+		NO_TOUR,	// the whole search ran without finding a tour
+		BUDGET_EXCEEDED,	// the move budget or the time limit ran out first
+		CANCELLED	// the run was cancelled first
 	}
 	
 	/* Private variables for KnightBoard */
 	private Heuristic type;	// the heuristic being used by this board
-	private int boardSize;	// the size of one dimension of the board
+	private int rows;	// the number of rows of the board
+	private int cols;	// the number of columns of the board
+	private MoveGraph graph;	// the board shape and the piece's moves, shared by every engine
 	private Position[][] knightBoard;	// the actual board as an array
-	private int attemptedMoves;	// the number of moves attempted to complete the tour
-	private int moveNum;	// the current move number (never higher than maxMoves)
+	private long attemptedMoves;	// the number of moves attempted to complete the tour
 	private int maxMoves;	// the maximum number of moves that can be made in an ideal tour
+	private int threads;	// the number of worker threads to search with
+	private int splitDepth;	// the number of squares on the path handed to each worker
+	private long[] workerMoves;	// attempted moves per worker in the last parallel run
+	private boolean closed;	// only accept tours that end a knight's move from the start
+	private TieBreak tieBreak;	// how Warnsdorff's heuristic orders squares of equal degree
+	private long seed;	// the seed of the random tie-break policy
+	private long ties;	// Warnsdorff ties met in the last run
+	private long backtracks;	// backtracks made in the last run
+	private boolean prune;	// abandon paths that strand an unvisited square
+	private int floodInterval;	// path lengths between connectivity checks, 0 for none
+	private long prunedMoves;	// moves abandoned by the pruning checks in the last run
+	private long memoBytes;	// the most memory the dead state tables may use, 0 for none
+	private DeadStateTable.Replacement replacement;	// how the tables make room for new states
+	private long memoHits;	// states found in the dead state tables in the last run
+	private long memoMisses;	// states looked up and not found in the last run
+	private long memoEvictions;	// stored states dropped to make room in the last run
+	private KnightEngine solver;	// the engine holding the last tour found, null if none
+	private int start;	// the starting square of the last run, x*cols+y
+	private SearchControl control;	// the limits of each run, null for none
+	private SearchProgress progress;	// where each run reports its progress, null for nowhere
+	private Status status;	// how the last run ended
+	private File checkpointFile;	// where single threaded runs save their state, null for nowhere
+	private long checkpointInterval;	// milliseconds between checkpoints
+	private boolean race;	// race a portfolio of configurations instead of the heuristic
+	private KnightPortfolio portfolio;	// the configurations of the last race, null if none
 	
 	/**
 	 * initializes KnightBoard of specified size, and runs through the scenario given by the user
@@ -29,748 +79,707 @@ public class KnightBoard {
 	 * 
 	 */
 	public KnightBoard(int type, int initSize) {
+		this(type, initSize, initSize, 2, 1);
+	}
+	
+	/**
+	 * initializes a rectangular KnightBoard for an (a,b)-leaper, of which
+	 * the knight is the (2,1)-leaper
+	 * 
+	 * @param type - the heuristic type
+	 * @param initRows - the number of rows
+	 * @param initCols - the number of columns
+	 * @param longLeg - the longer leg of the leap, a
+	 * @param shortLeg - the shorter leg of the leap, b
+	 * 
+	 */
+	public KnightBoard(int type, int initRows, int initCols, int longLeg, int shortLeg) {
+		this(type, new MoveGraph(initRows, initCols, longLeg, shortLeg));
+	}
+	
+	/**
+	 * initializes a KnightBoard for a move graph, which may have blocked
+	 * squares. The blocked squares are occupied from the start, and a tour
+	 * visits every other square.
+	 * 
+	 * @param type - the heuristic type
+	 * @param graph - the board shape, its blocked squares and the piece's moves
+	 * 
+	 */
+	public KnightBoard(int type, MoveGraph graph) {
 		this.type = retMoveType(type);
-		initBoard(initSize);
-		boardSize = initSize;
-		maxMoves = initSize*initSize;
-		moveNum = 0;
+		initBoard(graph.getRows(), graph.getCols());
+		rows = graph.getRows();
+		cols = graph.getCols();
+		maxMoves = rows*cols;
+		this.graph = graph;
+		for(int square = 0; square < maxMoves; square++) {
+			if(graph.isBlocked(square)) {
+				knightBoard[square / cols][square % cols].setOccupation(2);
+			}
+		}
 		attemptedMoves = 0;
+		threads = 1;
+		workerMoves = new long[0];
+		tieBreak = TieBreak.LOWEST;
+		replacement = DeadStateTable.Replacement.DEPTH;
 	}
 	
 	/**
-	 * Passes input parameters to the correct function for processing
+	 * Splits the search over several worker threads on the next run
 	 * 
-	 * @param xPos - starting x position
-	 * @param yPos - starting y position
+	 * @param threads - the number of worker threads, 1 to search on this thread
+	 * @param splitDepth - the number of squares on the path handed to each worker
 	 * 
 	 */
-	public boolean runKnightBoard(int xPos, int yPos) {
-		boolean retVal;
-		
-		Position startPoint = knightBoard[xPos][yPos];
-		
-		switch (this.type) {
-		case NO_HEUR:
-			retVal = visitNoHeur(startPoint);
-			break;
-		case BORDERS:
-			retVal = visitBorders(startPoint);
-			break;
-		case WARNSDORFF:
-			retVal = visitWarnsdorff(startPoint);
-			break;
-		default:
-			retVal = visitNoHeur(startPoint);
-		}		
-		return retVal;
+	public void setParallel(int threads, int splitDepth) {
+		this.threads = threads;
+		this.splitDepth = splitDepth;
 	}
 	
 	/**
-	 * get solution count for use outside the KnightBoard object
+	 * Races a portfolio of search configurations against each other on
+	 * the next run instead of searching with the board's heuristic, one
+	 * configuration on each of the parallel threads, at least 3
 	 * 
-	 * @return solnCount - the number of moves it took to get a solution.
+	 * @param race - true to race the portfolio
 	 * 
 	 */
-	public int getAttemptedMoves() {
-		return attemptedMoves;
+	public void setPortfolio(boolean race) {
+		this.race = race;
 	}
 	
-	/* 
-	 * (non-Javadoc)
+	/**
+	 * Restricts the next run to closed tours, whose last square is a
+	 * knight's move away from the starting square
 	 * 
-	 * @see java.lang.Object#toString()
+	 * @param closed - true to only accept closed tours
 	 * 
 	 */
-	public String toString() {
-		String retString;
-		int index;	// allows Y index to be appended on first line
-		retString = "  ";	// offset for first index
-
-		// append Y index values on the first line
-		for(index = 0;index < boardSize; index++) {
-			// offsets to ensure values line up for board sizes with fewer than 100000 squares
-			if(maxMoves >= 10 && index < 10) {
-				retString += " ";
-			}
-			if(maxMoves >= 100 && index < 100) {
-				retString += " ";
-			}
-			if(maxMoves >= 1000 && index < 1000) {
-				retString += " ";
-			}
-			if(maxMoves >= 10000 && index < 10000) {
-				retString += " ";
-			}
-			// append the index
-			retString += Integer.toString(index) + " ";
-		}
+	public void setClosed(boolean closed) {
+		this.closed = closed;
+	}
 	
-		// end of first line
-		retString += "\n";
-
-		// Fill in the rest of the lines
-		for(int i = 0; i < boardSize; i++) {
-			// appends X index at the start of a given line
-			retString += Integer.toString(i);
-			if(i < 10) {
-				retString += " ";
-			}
-			
-			// appends the move number of a given square to the line
-			for(int j = 0; j < boardSize; j++) {
-				// offsets to ensure values line up for board sizes with fewer than 100000 squares
-				if(knightBoard[i][j].getMoveNum() < 10) {
-					retString += " ";
-				}
-				if(knightBoard[i][j].getMoveNum() < 100 && maxMoves >= 100) {
-					retString += " ";
-				}
-				if(knightBoard[i][j].getMoveNum() < 1000 && maxMoves >= 1000) {
-					retString += " ";
-				}
-				if(knightBoard[i][j].getMoveNum() < 10000 && maxMoves >= 10000) {
-					retString += " ";
-				}
-				// append the value
-				retString += knightBoard[i][j].toString() + " ";
-			}
-		
-			// end of line
-			if(i < boardSize-1) {
-				retString += "\n";
-			}
-			if(i == boardSize-1) {
-				retString += "\n";
-			}
-		}
-
-		return retString;
-	}	
+	/**
+	 * Selects how Warnsdorff's heuristic orders squares of equal degree on
+	 * the next run
+	 * 
+	 * @param tieBreak - the tie-break policy
+	 * @param seed - the seed of the random policy
+	 * 
+	 */
+	public void setTieBreak(TieBreak tieBreak, long seed) {
+		this.tieBreak = tieBreak;
+		this.seed = seed;
+	}
 	
 	/**
-	 * Initializes all spaces in the KnightBoard array to empty, new
-	 * positions
+	 * Turns on checks that abandon a path as soon as an unvisited square
+	 * has no way in, or more than one has only one way in
+	 * 
+	 * @param prune - true to run the checks after every move
+	 * @param floodInterval - path lengths between checks that the unvisited
+	 *                        squares are still connected, 0 for none
 	 * 
 	 */
-	private void initBoard(int initSize) {
-		knightBoard = new Position[initSize][initSize];
-		// create a board composed of new Positions
-		for(int xIndex = 0; xIndex < initSize; xIndex++) {
-			for(int yIndex = 0; yIndex < initSize; yIndex++) {
-				knightBoard[xIndex][yIndex] = new Position(xIndex,yIndex);
-			}
-		}
+	public void setPruning(boolean prune, int floodInterval) {
+		this.prune = prune;
+		this.floodInterval = floodInterval;
 	}
 	
 	/**
-	 * Parses the input "type", and returns an enumeration value
-	 * representing the movement algorithm type for the current
-	 * KnightBoard
+	 * Keeps a table of search states proven to lead to no tour on the next
+	 * run, so the search without a heuristic never searches one twice.
+	 * Only boards that fit the bitboard engine keep a table, and in a
+	 * parallel run the memory is shared out between the workers.
 	 * 
-	 * @param type - the movement type as an integer
-	 * @return retVal - the enumeration type representing the movement type
+	 * @param memoryBytes - the most memory the tables may use, 0 for none
+	 * @param replacement - how a table makes room for new states
 	 * 
 	 */
-	private Heuristic retMoveType(int type) {
-		// the enumeration to be returned
-		Heuristic retVal;	
-		
-		switch (type) {
-		case 0:		// selected no Heuristic
-			retVal = Heuristic.NO_HEUR;
-			break;
-		case 1:		// selected Heuristic approach
-			retVal = Heuristic.BORDERS;
-			break;
-		case 2:		// selected Warnsdorff's Heuristic
-			retVal = Heuristic.WARNSDORFF;
-			break;
-		default:	// if something weird happened
-			retVal = Heuristic.ERROR;
-			break;
-		}
-		return retVal;
+	public void setMemo(long memoryBytes, DeadStateTable.Replacement replacement) {
+		this.memoBytes = memoryBytes;
+		this.replacement = replacement;
 	}
 	
 	/**
- 	 * moves the "knight" according to a simple clockwise strategy, operating without 
-	 * heuristics to try to find a route to complete the Knight's Tour with the constructed
-	 * board.
+	 * Limits the next runs to a move budget or a time limit, and lets
+	 * another thread cancel them through the control. Each run restarts
+	 * the control's clock and budget.
+	 * 
+	 * @param control - the limits, or null for none
 	 * 
-	 * @param startPoint - starting position
+	 */
+	public void setControl(SearchControl control) {
+		this.control = control;
+	}
+	
+	/**
+	 * Has the next runs report their progress, which another thread can
+	 * read while they search. Each run clears the progress first.
+	 * 
+	 * @param progress - the progress view, or null for no reports
+	 * 
+	 */
+	public void setProgress(SearchProgress progress) {
+		this.progress = progress;
+	}
+	
+	/**
+	 * Saves the state of the next runs to a file at a fixed interval, and
+	 * when a run is stopped by its control, so that resumeKnightBoard can
+	 * carry it on. Only runs on a single thread save their state, and a
+	 * run with the random tie-break can't be carried on exactly.
+	 * 
+	 * @param file - the checkpoint file, or null for no checkpoints
+	 * @param intervalMillis - the milliseconds between checkpoints
+	 * 
+	 */
+	public void setCheckpoint(File file, long intervalMillis) {
+		this.checkpointFile = file;
+		this.checkpointInterval = intervalMillis;
+	}
+	
+	/**
+	 * Passes input parameters to the correct engine for processing
+	 * 
+	 * @param xPos - starting x position
+	 * @param yPos - starting y position
+	 * 
+	 */
+	public boolean runKnightBoard(int xPos, int yPos) {
+		return run(xPos, yPos, null);
+	}
+	
+	/**
+	 * Carries on a run from a checkpoint, on a single thread, to the same
+	 * tour and attempted moves as if it had never stopped. The board needs
+	 * the settings the checkpoint was taken with, and with a dead state
+	 * table the table starts out empty, so the tour is the same but the
+	 * counts are not.
+	 * 
+	 * @param xPos - starting x position of the run
+	 * @param yPos - starting y position of the run
+	 * @param state - the checkpoint
 	 * @return false for failure, true for success
+	 * @throws IllegalArgumentException if the checkpoint is for another run
 	 * 
 	 */
-	private boolean visitNoHeur(Position startPoint) {
-		// the number of moves taken, to be placed in each position.
-		int tmpVal;
-		boolean finished;
-		boolean retVal;
-		Position tmpPosit;
-		int xPos;
-		int yPos;
-		
-		// initialize relevant variables
-		tmpVal = moveNum;
-		finished = false;
-		xPos = startPoint.getXIndex();
-		yPos = startPoint.getYIndex();
-		
-		// increment moveNum and total attempts
-		moveNum++;
-		attemptedMoves++;
-
-		// set current position to visited
-		startPoint.setMoveNum(moveNum);
-		startPoint.setOccupation(1);
-				
-		// up 2,  right 1
-		if(xPos > 1 && yPos < boardSize-1 && notVisited(xPos-2, yPos+1) && !finished) {
-			tmpPosit = knightBoard[xPos-2][yPos+1];
-			finished = visitNoHeur(tmpPosit);	// visit the position
-			if(!finished) {
-				resetPosition(tmpPosit);	// didn't work, reset the numbers
-			}				
+	public boolean resumeKnightBoard(int xPos, int yPos, SearchCheckpoint state) {
+		if(state.getStart() != graph.square(xPos, yPos)) {
+			throw new IllegalArgumentException("the checkpoint is for another starting square");
 		}
-		
-		// right 2 
-		if(yPos < boardSize-2) {
-			// up 1
-			if(xPos > 0 && notVisited(xPos-1, yPos+2) && !finished) {
-				tmpPosit = knightBoard[xPos-1][yPos+2];
-				finished = visitNoHeur(tmpPosit);	// visit the position
-				if(!finished) {
-					resetPosition(tmpPosit);	// didn't work, reset the numbers
-				}
-			}
-			
-			// down 1
-			if(xPos < boardSize-1 && notVisited(xPos+1, yPos+2) && !finished) {
-				tmpPosit = knightBoard[xPos+1][yPos+2];
-				finished = visitNoHeur(tmpPosit);	// visit the position
-				if(!finished) {
-					resetPosition(tmpPosit);	// didn't work, reset the numbers
-				}
-			}
-		}
-		
-		// down 2 
-		if(xPos < boardSize-2) {
-			// right 1
-			if(yPos < boardSize-1 && notVisited(xPos+2, yPos+1) && !finished) {
-				tmpPosit = knightBoard[xPos+2][yPos+1];
-				finished = visitNoHeur(tmpPosit);	// visit the position
-				if(!finished) {
-					resetPosition(tmpPosit);	// didn't work, reset the numbers
-				}
-			}
-			
-			// left 1
-			if(yPos > 0 && notVisited(xPos+2, yPos-1) && !finished) {
-				tmpPosit = knightBoard[xPos+2][yPos-1];
-				finished = visitNoHeur(tmpPosit);	// visit the position
-				if(!finished) {		
-					resetPosition(tmpPosit);	// didn't work, reset the numbers
-				}
-			}
-		}	
-		
-		// left 2
-		if(yPos > 1) {
-			// down 1
-			if(xPos < boardSize-1 && notVisited(xPos+1, yPos-2) && !finished) {
-				tmpPosit = knightBoard[xPos+1][yPos-2];
-				finished = visitNoHeur(tmpPosit);	// visit the position
-				if(!finished) {
-					resetPosition(tmpPosit);	// didn't work, reset the numbers
-				}
-			}
-			
-			// up 1
-			if(xPos > 0 && notVisited(xPos-1,yPos-2) && !finished) {
-				tmpPosit = knightBoard[xPos-1][yPos-2];
-				finished = visitNoHeur(tmpPosit);	// visit the position
-				if(!finished) {
-					resetPosition(tmpPosit);	// didn't work, reset the numbers
-				}
-			}
-		}
-		// up 2, left 1
-		if(xPos > 1 && yPos >  0 && notVisited(xPos-2, yPos-1) && !finished) {
-			tmpPosit = knightBoard[xPos-2][yPos-1];
-			finished = visitNoHeur(tmpPosit);	// visit the position
-			if(!finished) {
-				resetPosition(tmpPosit);	// didn't work, reset the numbers
-			}
-		}
-		
-		// make sure we were successful, if not, then we're backtracking and have to account for it
-		if(moveNum != maxMoves) {
-//			finished = false;
-			moveNum = tmpVal;
-		} else {	// we were successful
-			finished = true;
-		}
-		
-		retVal = finished;
-		
-		return retVal;
+		return run(xPos, yPos, state);
 	}
 	
 	/**
-	 * Moves the "knight" according to a simple heuristic in which, whenever
-	 * there are multiple eligible moves from the starting position, the preferred
-	 * starting move is the move closer to the border of the chess board.
+	 * Runs the tour on the selected engines and collects the results
 	 * 
-	 * @param startPoint - starting position
+	 * @param xPos - starting x position
+	 * @param yPos - starting y position
+	 * @param state - a checkpoint to carry on from, or null for a new run
 	 * @return false for failure, true for success
 	 * 
 	 */
-	private boolean visitBorders(Position startPoint) {
-		Position potMove[];	// holds each valid position in index from 0-7, leaves invalid moves null
-		int distFromBord[];	// collects ditance from border of each valid position in corresponding indexes
-		int xPos;	// x index
-		int yPos;	// y index
-		int tmpMoves;		// the number of moves taken, to be placed in each position upon completion of the tour
-		boolean finished;	// checks whether or not the tour is complete
-		boolean retVal;	// return value
-		
-		// initialize relevant values
-		tmpMoves = moveNum;
-		finished = false;
-		potMove = new Position[8];
-		distFromBord = new int[8];
-		xPos = startPoint.getXIndex();
-		yPos = startPoint.getYIndex();
-
-		moveNum++;	// increments the number of moves required to reach a given space
-		attemptedMoves++;	// increments the total number of attempted moves during the given knight's tour
-
-		// change current position to used
-		startPoint.setMoveNum(moveNum);
-		startPoint.setOccupation(1);
-		
-		// check distance from border for all valid moves, add the valid moves to 
-		// potMove array, with their corresponding distance from the border in the 
-		// same index of distFromBord array.
-		// check distance from border up
-//		if(xPos > 1) {
-			// right
-			if(xPos > 1 && yPos < boardSize-1 && notVisited(xPos-2,yPos+1)) {
-				potMove[0] = knightBoard[xPos-2][yPos+1];
-				distFromBord[0] = checkBorder(xPos-2) + checkBorder(yPos+1);
-			} else {	// not a valid move, set distance from border to -1
-				distFromBord[0] = -1;
-			}
-//		} else {	// not a valid move, set distance from border to -1
-//			distFromBord[0] = distFromBord[1] = -1;
-//		}
+	private boolean run(int xPos, int yPos, SearchCheckpoint state) {
+		boolean retVal;
+		KnightEngine engine;
 		
-		// check distance from border right
-		if(yPos < boardSize-2) {
-			// up
-			if(xPos > 0 && notVisited(xPos-1, yPos+2)) {
-				potMove[1] = knightBoard[xPos-1][yPos+2];
-				distFromBord[1] = checkBorder(xPos-1) + checkBorder(yPos+2);
-			} else {	// not a valid move, set distance from border to -1
-				distFromBord[1] = -1;
-			}
-			
-			// down
-			if(xPos < boardSize-1 && notVisited(xPos+1, yPos+2)) {
-				potMove[2] = knightBoard[xPos+1][yPos+2];
-				distFromBord[2] = checkBorder(xPos+1) + checkBorder(yPos+2);
-			} else {	// not a valid move, set distance from border to -1
-				distFromBord[2] = -1;
-			}
-		} else {	// not a valid move, set distance from border to -1
-			distFromBord[1] = distFromBord[2] = -1;
+		if(control != null) {
+			control.start();
 		}
-		
-		// check distance from border down
-		if(xPos < boardSize-2) {
-			// right
-			if(yPos < boardSize-1 && notVisited(xPos+2, yPos+1)) {
-				potMove[3] = knightBoard[xPos+2][yPos+1];
-				distFromBord[3] = checkBorder(xPos+2) + checkBorder(yPos+1);
-			} else {	// not a valid move, set distance from border to -1
-				distFromBord[3] = -1;
-			}
-			
-			// left
-			if(yPos > 0 && notVisited(xPos+2, yPos-1)) {
-				potMove[4] = knightBoard[xPos+2][yPos-1];
-				distFromBord[4] = checkBorder(xPos+2) + checkBorder(yPos-1);
-			} else {	// not a valid move, set distance from border to -1
-				distFromBord[4] = -1;
-			}
-		} else {	// not a valid move, set distance from border to -1
-			distFromBord[3] = distFromBord[4] = -1;
+		if(progress != null) {
+			progress.start(maxMoves);
 		}
 		
-		// check distance from border left
-		if(yPos > 1) {
-			// down
-			if(xPos < boardSize-1 && notVisited(xPos+1, yPos-2)) {
-				potMove[5] = knightBoard[xPos+1][yPos-2];
-				distFromBord[5] = checkBorder(xPos+1) + checkBorder(yPos-2);
-			} else {	// not a valid move, set distance from border to -1
-				distFromBord[5] = -1;
-			}
-			
-			// up
-			if(xPos > 0 && notVisited(xPos-1, yPos-2)) {
-				potMove[6] = knightBoard[xPos-1][yPos-2];
-				distFromBord[6] = checkBorder(xPos-1) + checkBorder(yPos-2);
-			} else {	// not a valid move, set distance from border to -1
-				distFromBord[6] = -1;
-			}
-		} else {	// not a valid move, set distance from border to -1
-			distFromBord[5] = distFromBord[6] = -1;
-		}
-		// look up and left
-		if(xPos > 1 && yPos > 0 && notVisited(xPos-2,yPos-1)) {
-			potMove[7] = knightBoard[xPos-2][yPos-1];
-			distFromBord[7] = checkBorder(xPos-2) + checkBorder(yPos-1);
-		} else {	// not a valid move, set distance from border to -1
-			distFromBord[7] = -1;
+		// a constructed tour has no search tree to split, and a checkpoint
+		// holds a single path
+		portfolio = null;
+		if(race && state == null) {
+			portfolio = new KnightPortfolio(this::newSearchEngine, maxMoves, threads, seed);
+			portfolio.setControl(control);
+			try {
+				retVal = portfolio.runKnightBoard(xPos, yPos);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				retVal = false;
+			}
+			engine = portfolio.getWinner();
+			attemptedMoves = portfolio.getAttemptedMoves();
+			workerMoves = portfolio.getMoves();
+			ties = portfolio.getTies();
+			backtracks = portfolio.getBacktracks();
+			prunedMoves = portfolio.getPrunedMoves();
+			memoHits = 0;
+			memoMisses = 0;
+			memoEvictions = 0;
+		} else if(threads > 1 && !constructs() && state == null) {
+			ParallelKnightSearch search = new ParallelKnightSearch(() -> newSearchEngine(searchType()), threads,
+					splitDepth);
+			search.setControl(control);
+			retVal = search.runKnightBoard(xPos, yPos);
+			engine = search.getWinner();
+			attemptedMoves = search.getAttemptedMoves();
+			workerMoves = search.getWorkerMoves();
+			ties = search.getTies();
+			backtracks = search.getBacktracks();
+			prunedMoves = search.getPrunedMoves();
+			memoHits = search.getMemoHits();
+			memoMisses = search.getMemoMisses();
+			memoEvictions = search.getMemoEvictions();
+		} else {
+			if(constructs()) {
+				engine = setUp(new KnightConstruct(rows));
+				retVal = engine.runKnightBoard(xPos, yPos);
+			} else {
+				KnightSearchEngine search = newSearchEngine(searchType());
+				search.setCheckpoint(checkpointFile, checkpointInterval);
+				retVal = state != null ? search.resume(state) : search.runKnightBoard(xPos, yPos);
+				engine = search;
+			}
+			attemptedMoves = engine.getAttemptedMoves();
+			ties = engine.getTies();
+			backtracks = engine.getBacktracks();
+			prunedMoves = engine.getPrunedMoves();
+			memoHits = engine.getMemoHits();
+			memoMisses = engine.getMemoMisses();
+			memoEvictions = engine.getMemoEvictions();
 		}
 		
-
-		
-		int arrayCounter = 8;	// counts down number of indices to check
-		
-		// adds indices of the valid distFromBorder entries to queue searchOrder 
-		// from smallest distance in distFromBord to largest distance. This enables
-		// easy access to the correct order of positions from the potMove array.
-		while(arrayCounter > 0 && !finished) {
-			int tmpIndex = 0;
-			
-			// ignores leading -1 values (invalid indexes)
-			while(tmpIndex < 8 && distFromBord[tmpIndex] < 0) {
-				tmpIndex++;
-			}
-			
-			// all indexes are -1, end the loop
-			if(tmpIndex > 7) {
-				break;
-			}
-			
-			// finds the smallest value in the array
-			for(int index = tmpIndex+1; index < 8; index++) {
-				if(distFromBord[index] > -1 && distFromBord[index] < distFromBord[tmpIndex]) {
-					tmpIndex = index;
+		solver = retVal ? engine : null;
+		status = retVal ? Status.SOLVED : stopStatus();
+		start = graph.square(xPos, yPos);
+		
+		// copy the tour back onto the Position grid
+		if(retVal) {
+			for(int xIndex = 0; xIndex < rows; xIndex++) {
+				for(int yIndex = 0; yIndex < cols; yIndex++) {
+					if(knightBoard[xIndex][yIndex].getOccupation() != 2) {
+						knightBoard[xIndex][yIndex].setMoveNum(engine.getMoveNum(xIndex, yIndex));
+						knightBoard[xIndex][yIndex].setOccupation(1);
+					}
 				}
 			}
-			
-			// calls moveBorders on the potential moves
-			finished = visitBorders(potMove[tmpIndex]);
-			
-			// if moved is true, we found a successful path, don't worry about any other positions!!
-			if(!finished) {
-				resetPosition(potMove[tmpIndex]);
-			} 
-
-			// set the value to -1 so it won't be used again
-			distFromBord[tmpIndex] = -1;
-			
-			// decrease arrayCounter
-			arrayCounter--;
 		}
-			
-		// if we made it through the for:each loop and haven't found the path, make sure that
-		// the return value is false, and reset the moveNum to it's incoming value
-		if(moveNum != maxMoves) {
-			finished = false;
-			moveNum = tmpMoves;
-		} else {	// we were successful
-			finished = true;
-		}	
-		
-		retVal = finished;
-		
 		return retVal;
 	}
 	
 	/**
-	 * Moves the "knight" according to Warnsdorff's heuristic in which, 
-	 * whenever there are multiple eligible next moves, the desired first
-	 * move is the move with the fewest onward moves.
+	 * Streams the tours from a starting square in search order, searching
+	 * on only as far as the tours are taken from the stream. Each tour is
+	 * the clockwise direction of each of its moves, see MoveGraph.path.
+	 * The run's settings apply, except that it always runs on one thread.
 	 * 
-	 * @param startPoint - starting position for the function
-	 * @return false for failure, true for success
+	 * @param xPos - starting x position
+	 * @param yPos - starting y position
+	 * @return the tours, one at a time
+	 * @throws IllegalArgumentException if the board doesn't fit the bitboard engine
 	 * 
 	 */
-	private boolean visitWarnsdorff(Position startPoint) {
-		boolean retVal;	// return boolean
-		boolean finished;	// boolean to determine whether we're finished	
-		int xPos;	// x coordinate
-		int yPos;	// y coordinate
-		int tmpMoves;	// number of moves at the start of the visit
-		Position[] positArray;	// array of available positions
-		int[] movesArray;	// array of the number of moves available from each position
-		
-		// initialize relevant values
-		positArray = new Position[8];
-		movesArray = new int[8];
-		tmpMoves = moveNum;
-		finished = false;
-		xPos = startPoint.getXIndex();
-		yPos = startPoint.getYIndex();
-		
-		// increment count values
-		moveNum++;
-		attemptedMoves++;
-		
-		// set the position to used, and give it a visitation number
-		startPoint.setMoveNum(moveNum);
-		startPoint.setOccupation(1);
-		
-		// checking up
-		if(xPos > 1) {
-			// look left and add number of moves to movesArray
-			if(yPos > 0 && notVisited(xPos-2, yPos-1)) {
-				positArray[7] = knightBoard[xPos-2][yPos-1];
-				movesArray[7] = checkMoves(positArray[7]);
-			} else {
-				movesArray[7] = -1;
-			}
-			// look right and add number of moves to movesArray
-			if(yPos < boardSize-1 && notVisited(xPos-2, yPos+1)) {
-				positArray[0] = knightBoard[xPos-2][yPos+1];
-				movesArray[0] = checkMoves(positArray[0]);
-			} else {
-				movesArray[0] = -1;
-			}
-		} else {
-			movesArray[7] = movesArray[0] = -1;
-		}
+	public Stream<byte[]> tours(int xPos, int yPos) {
+		KnightBitboard engine = new KnightBitboard(searchType(), graph);
 		
-		// checking right
-		if(yPos < boardSize-2) {
-			// look up and add number of moves to moves array
-			if(xPos > 0 && notVisited(xPos-1, yPos+2)) {
-				positArray[1] = knightBoard[xPos-1][yPos+2];
-				movesArray[1] = checkMoves(positArray[1]);
-			} else {
-				movesArray[1] = -1;
-			}
-			// look down and add number of moves to moves array
-			if(xPos < boardSize-1 && notVisited(xPos+1, yPos+2)) {
-				positArray[2] = knightBoard[xPos+1][yPos+2];
-				movesArray[2] = checkMoves(positArray[2]);
-			} else {
-				movesArray[2] = -1;
-			}
-		} else {
-			movesArray[1] = movesArray[2] = -1;
-		}
-		
-		// checking down
-		if(xPos < boardSize-2) {
-			// look right and add number of moves to moves array
-			if(yPos < boardSize-1 && notVisited(xPos+2, yPos+1)) {
-				positArray[3] = knightBoard[xPos+2][yPos+1];
-				movesArray[3] = checkMoves(positArray[3]);
-			} else {
-				movesArray[3] = -1;
-			}
-			
-			// look left and add number of moves to moves array
-			if(yPos > 0 && notVisited(xPos+2, yPos-1)) {
-				positArray[4] = knightBoard[xPos+2][yPos-1];
-				movesArray[4] = checkMoves(positArray[4]);
-			} else {
-				movesArray[4] = -1;
-			}
-		} else {
-			movesArray[3] = movesArray[4] = -1;
+		engine.setClosed(closed);
+		engine.setTieBreak(tieBreak, seed);
+		engine.setPruning(prune, floodInterval);
+		return StreamSupport.stream(new TourSpliterator(engine, xPos, yPos), false);
+	}
+	
+	/**
+	 * Returns the board's move graph
+	 * 
+	 * @return the board shape and the piece's moves
+	 * 
+	 */
+	public MoveGraph getGraph() {
+		return graph;
+	}
+	
+	/**
+	 * Creates an engine for this board that searches with a given
+	 * heuristic, set up with the board's settings. Small boards fit in a
+	 * single long and run on the bitboard engine, and larger boards run
+	 * on the non-recursive KnightSearch engine, which walks this board's
+	 * move graph.
+	 * 
+	 * @param heuristic - the heuristic to search with, not CONSTRUCTIVE
+	 * @return the new engine
+	 * 
+	 */
+	private KnightSearchEngine newSearchEngine(Heuristic heuristic) {
+		if(KnightBitboard.fits(graph)) {
+			return setUp(new KnightBitboard(heuristic, graph));
 		}
+		return setUp(new KnightSearch(heuristic, graph));
+	}
+	
+	/**
+	 * Passes the board's settings on to a new engine
+	 * 
+	 * @param engine - the engine
+	 * @return the same engine, set up
+	 * 
+	 */
+	private <E extends KnightEngine> E setUp(E engine) {
+		engine.setClosed(closed);
+		engine.setTieBreak(tieBreak, seed);
+		engine.setPruning(prune, floodInterval);
+		engine.setMemo(threads > 1 ? memoBytes / threads : memoBytes, replacement);
+		engine.setControl(control);
+		engine.setProgress(progress);
+		return engine;
+	}
+	
+	/**
+	 * Works out why a run that found no tour ended
+	 * 
+	 * @return NO_TOUR unless the control stopped the run first
+	 * 
+	 */
+	private Status stopStatus() {
+		Status retVal;
 		
-		// checking left
-		if(yPos > 1) {
-			// look down and add number of moves to moves array
-			if(xPos < boardSize-1 && notVisited(xPos+1, yPos-2)) {
-				positArray[5] = knightBoard[xPos+1][yPos-2];
-				movesArray[5] = checkMoves(positArray[5]);
-			} else {
-				movesArray[5] = -1;
-			}
-			
-			// look up and add number of moves to moves array
-			if(xPos > 0 && notVisited(xPos-1, yPos-2)) {
-				positArray[6] = knightBoard[xPos-1][yPos-2];
-				movesArray[6] = checkMoves(positArray[6]);
-			} else {
-				movesArray[6] = -1;
-			}
-		} else {
-			movesArray[5] = movesArray[6] = -1;
+		switch (control != null ? control.getReason() : SearchControl.Stop.NONE) {
+		case BUDGET:
+		case DEADLINE:
+			retVal = Status.BUDGET_EXCEEDED;
+			break;
+		case CANCELLED:
+			retVal = Status.CANCELLED;
+			break;
+		default:
+			retVal = Status.NO_TOUR;
+			break;
 		}
+		return retVal;
+	}
+	
+	/**
+	 * Checks whether the tour is built by KnightConstruct rather than found
+	 * by a search
+	 * 
+	 * @return true for the constructive heuristic with a knight on a
+	 *         square board of a size it supports, with no blocked squares
+	 * 
+	 */
+	private boolean constructs() {
+		return type == Heuristic.CONSTRUCTIVE && graph.isSquareKnight() && !graph.hasMask()
+				&& KnightConstruct.supports(rows);
+	}
+	
+	/**
+	 * Returns the heuristic the engines should search with. The engines
+	 * have no error type, so it falls back to no heuristic, and boards the
+	 * constructive heuristic can't build are searched with Warnsdorff's.
+	 * 
+	 * @return the heuristic to search with
+	 * 
+	 */
+	private Heuristic searchType() {
+		Heuristic retVal;
 		
-		// count down indicator value
-		int countDown = 8;
-		
-		// while the array still has values
-		while(countDown > 0 && !finished) {
-			int tmpIndex = 0;	// index of the smallest value
-			
-			// skip leading invalid moves
-			while(tmpIndex < 8 && movesArray[tmpIndex] < 0) {
-				tmpIndex++;
-			}
-			
-			// there are no valid moves
-			if(tmpIndex > 7) {
-				break;
-			}
-			
-			// search for the smallest value, collect its index
-			for(int index = tmpIndex+1; index < 8; index++) {
-				if(movesArray[index] > -1 && movesArray[tmpIndex] > movesArray[index]) {
-					tmpIndex = index;
-				}
-			}
-			
-			// visit the position with the lowest number of moves
-			finished = visitWarnsdorff(positArray[tmpIndex]);
-			
-			// if moved is true, we found a successful path, don't worry about any other positions!!
-			if(!finished) {
-				resetPosition(positArray[tmpIndex]);
-			} 
-
-			// eliminate the used move from the list of available moves
-			movesArray[tmpIndex] = -1;			
-			countDown--;
+		switch (type) {
+		case ERROR:
+			retVal = Heuristic.NO_HEUR;
+			break;
+		case CONSTRUCTIVE:
+			retVal = Heuristic.WARNSDORFF;
+			break;
+		default:
+			retVal = type;
+			break;
 		}
-		
-		// we didn't find a valid option
-		if(moveNum != maxMoves) {
-			finished = false;
-			moveNum = tmpMoves;
-		} else {	// we were successful
-			finished = true;
-		}		
-		
-		retVal = finished;
-		
 		return retVal;
 	}
 	
 	/**
-	 * returns boolean to determine whether the position at the 
-	 * provided x and y coordinates is open
+	 * Returns the number of moves each worker attempted in a parallel run
 	 * 
-	 * @param xPos - the x coordinate of the position to be checked
-	 * @param yPos - the y coordinate of the position to be checked
-	 * @return the occupation status of the specified position
-	 * 				- true if open
-	 * 				- false if not open
+	 * @return attempted moves per worker, empty if the run was not parallel
 	 * 
 	 */
-	private boolean notVisited(int xPos, int yPos) {
-		return (knightBoard[xPos][yPos].getOccupation() == 0);
+	public long[] getWorkerMoves() {
+		return workerMoves;
 	}
 	
 	/**
-	 * resets a position to its open state
+	 * Returns the configurations of the last run if it raced a portfolio
 	 * 
-	 * @param xPos - the x coordinate of the position to be reset
-	 * @param yPos - the y coordinate of the position to be reset
+	 * @return the portfolio, with each configuration's moves and the
+	 *         winner, or null if the last run didn't race one
 	 * 
 	 */
-	private void resetPosition(Position posit) {
-		posit.setMoveNum(0);
-		posit.setOccupation(0);		
+	public KnightPortfolio getPortfolio() {
+		return portfolio;
 	}
 	
 	/**
-	 * Checks the distance from the input index to the nearest edge
+	 * Retrieves the move number at which the tour reached a square
 	 * 
-	 * @param index - the x or y coordinate of the position to be checked
-	 * @return retVal - the distance of the coordinate from the closest edge
+	 * @param xPos - the x coordinate of the square
+	 * @param yPos - the y coordinate of the square
+	 * @return the move number, or 0 if no tour has been found
 	 * 
 	 */
-	private int checkBorder(int index) {
-		int retVal;
-		int middle = boardSize/2;
-
-		// check location of index
-		if(index < middle) {	// index is closer to low value border
-			retVal = index;
-		} else {	// index is closer to high value border
-			retVal = boardSize-1 - index;
-		}
-		
-		return retVal;
+	public int getMoveNum(int xPos, int yPos) {
+		return knightBoard[xPos][yPos].getMoveNum();
 	}
 	
 	/**
-	 * returns the number of valid moves from a given position determined
-	 * by a provided x and y coordinate. Will return an integer between 0 and 8
+	 * get the number of moves in the last run where more than one square
+	 * shared the lowest Warnsdorff degree
 	 * 
-	 * @param posit - the position to be checked
-	 * @return validMoves - the number of valid moves from the given location
+	 * @return ties - 0 for the other heuristics
 	 * 
 	 */
-	private int checkMoves(Position posit) {
-		int validMoves = 0;
-		int xPos = posit.getXIndex();
-		int yPos = posit.getYIndex();
-		
-		// up from start
-		if(xPos > 1) {
-			// left
-			if(yPos > 0 && notVisited(xPos-2, yPos-1)) {
-				validMoves++;
-			}
-			
-			// right
-			if(yPos < boardSize-1 && notVisited(xPos-2, yPos+1)) {
-				validMoves++;
-			}
+	public long getTies() {
+		return ties;
+	}
+	
+	/**
+	 * get the number of moves taken back in the last run
+	 * 
+	 * @return backtracks - the number of times a square ran out of moves
+	 * 
+	 */
+	public long getBacktracks() {
+		return backtracks;
+	}
+	
+	/**
+	 * get the number of moves abandoned by the pruning checks in the last run
+	 * 
+	 * @return prunedMoves - 0 unless pruning is on
+	 * 
+	 */
+	public long getPrunedMoves() {
+		return prunedMoves;
+	}
+	
+	/**
+	 * get the number of states found in the dead state tables in the last
+	 * run, each abandoned without being searched
+	 * 
+	 * @return memoHits - 0 unless a table was kept
+	 * 
+	 */
+	public long getMemoHits() {
+		return memoHits;
+	}
+	
+	/**
+	 * get the number of states looked up and not found in the dead state
+	 * tables in the last run
+	 * 
+	 * @return memoMisses - 0 unless a table was kept
+	 * 
+	 */
+	public long getMemoMisses() {
+		return memoMisses;
+	}
+	
+	/**
+	 * get the number of stored states dropped from the dead state tables
+	 * to make room in the last run
+	 * 
+	 * @return memoEvictions - 0 unless a table was kept
+	 * 
+	 */
+	public long getMemoEvictions() {
+		return memoEvictions;
+	}
+	
+	/**
+	 * get how the last run ended
+	 * 
+	 * @return status - null before the first run
+	 * 
+	 */
+	public Status getStatus() {
+		return status;
+	}
+	
+	/**
+	 * get solution count for use outside the KnightBoard object
+	 * 
+	 * @return solnCount - the number of moves it took to get a solution.
+	 * 
+	 */
+	public long getAttemptedMoves() {
+		return attemptedMoves;
+	}
+	
+	/**
+	 * Writes the board a row at a time, each row built in one buffer,
+	 * with the columns as wide as the largest move number
+	 * 
+	 * @param out - where the board is written, not flushed
+	 * @throws IOException if the writer fails
+	 * 
+	 */
+	public void render(Writer out) throws IOException {
+		int headWidth = digits(maxMoves);	// width of the Y index values on the first line
+		int cellWidth = Math.max(2, headWidth);	// width of the move numbers
+		char[] line = new char[digits(rows) + 1 + cols*(cellWidth+1) + 1];
+		int length;
+		
+		// offset for first index, then the Y index values
+		line[0] = ' ';
+		line[1] = ' ';
+		length = 2;
+		for(int index = 0; index < cols; index++) {
+			length = putNumber(line, length, index, headWidth);
+			line[length++] = ' ';
 		}
+		line[length++] = '\n';
+		out.write(line, 0, length);
 		
-		// right from start
-		if(yPos < boardSize-2) {
-			// up
-			if(xPos > 0 && notVisited(xPos-1, yPos+2)) {
-				validMoves++;
+		// Fill in the rest of the lines
+		for(int i = 0; i < rows; i++) {
+			// X index at the start of the line, followed by a space below 10
+			length = putNumber(line, 0, i, i < 10 ? 1 : 0);
+			if(i < 10) {
+				line[length++] = ' ';
 			}
 			
-			// down
-			if(xPos < boardSize-1 && notVisited(xPos+1, yPos+2)) {
-				validMoves++;
+			// the move number of every square on the line, # if it is blocked
+			for(int j = 0; j < cols; j++) {
+				if(knightBoard[i][j].getOccupation() == 2) {
+					for(int pad = 1; pad < cellWidth; pad++) {
+						line[length++] = ' ';
+					}
+					line[length++] = '#';
+				} else {
+					length = putNumber(line, length, knightBoard[i][j].getMoveNum(), cellWidth);
+				}
+				line[length++] = ' ';
 			}
+			line[length++] = '\n';
+			out.write(line, 0, length);
 		}
+	}
+	
+	/**
+	 * Writes the last tour found in the compact format of CompactTour, 3
+	 * bits a move, straight from the engine that found it
+	 * 
+	 * @param out - the stream to write to, left open
+	 * @throws IOException if the stream fails
+	 * @throws IllegalStateException if the last run found no tour
+	 * 
+	 */
+	public void writeTour(OutputStream out) throws IOException {
+		if(solver == null) {
+			throw new IllegalStateException("no tour has been found");
+		}
+		new CompactTour(graph, start, solver.getDirections()).write(out);
+	}
+	
+	/* 
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 * 
+	 */
+	public String toString() {
+		StringWriter retString = new StringWriter((rows+1) * (cols+1) * (digits(maxMoves)+1));
 		
-		// down from start
-		if(xPos < boardSize-2) {
-			// right
-			if(yPos < boardSize-1 && notVisited(xPos+2, yPos+1)) {
-				validMoves++;
-			}
-			
-			// left
-			if(yPos > 0 && notVisited(xPos+2, yPos-1)) {
-				validMoves++;
-			}
+		try {
+			render(retString);
+		} catch(IOException e) {
+			// a StringWriter never fails
+			throw new IllegalStateException(e);
 		}
+		return retString.toString();
+	}
+	
+	/**
+	 * Writes a number right aligned in a field, or as it is if it is
+	 * wider than the field
+	 * 
+	 * @param line - the buffer to write into
+	 * @param pos - the start of the field
+	 * @param value - the number, not negative
+	 * @param width - the width of the field
+	 * @return the position after the field
+	 * 
+	 */
+	private static int putNumber(char[] line, int pos, int value, int width) {
+		int length = Math.max(width, digits(value));
+		int index = pos + length;
+		
+		do {
+			line[--index] = (char) ('0' + value % 10);
+			value /= 10;
+		} while(value > 0);
+		while(index > pos) {
+			line[--index] = ' ';
+		}
+		return pos + length;
+	}
+	
+	/**
+	 * Counts the decimal digits of a number
+	 * 
+	 * @param value - the number, not negative
+	 * @return the number of digits, 1 for 0
+	 * 
+	 */
+	private static int digits(int value) {
+		int retVal = 1;
 		
-		// left from start
-		if(yPos > 1) {
-			// down
-			if(xPos < boardSize-1 && notVisited(xPos+1, yPos-2)) {
-				validMoves++;
-			}
-			
-			// up
-			if(xPos > 0 && notVisited(xPos-1, yPos-2)) {
-				validMoves++;
+		while(value >= 10) {
+			value /= 10;
+			retVal++;
+		}
+		return retVal;
+	}
+	
+	/**
+	 * Initializes all spaces in the KnightBoard array to empty, new
+	 * positions
+	 * 
+	 */
+	private void initBoard(int initRows, int initCols) {
+		knightBoard = new Position[initRows][initCols];
+		// create a board composed of new Positions
+		for(int xIndex = 0; xIndex < initRows; xIndex++) {
+			for(int yIndex = 0; yIndex < initCols; yIndex++) {
+				knightBoard[xIndex][yIndex] = new Position(xIndex,yIndex);
 			}
 		}
+	}
+	
+	/**
+	 * Parses the input "type", and returns an enumeration value
+	 * representing the movement algorithm type for the current
+	 * KnightBoard
+	 * 
+	 * @param type - the movement type as an integer
+	 * @return retVal - the enumeration type representing the movement type
+	 * 
+	 */
+	private Heuristic retMoveType(int type) {
+		// the enumeration to be returned
+		Heuristic retVal;	
 		
-		return validMoves;		
+		switch (type) {
+		case 0:		// selected no Heuristic
+			retVal = Heuristic.NO_HEUR;
+			break;
+		case 1:		// selected Heuristic approach
+			retVal = Heuristic.BORDERS;
+			break;
+		case 2:		// selected Warnsdorff's Heuristic
+			retVal = Heuristic.WARNSDORFF;
+			break;
+		case 3:		// selected the constructive tour
+			retVal = Heuristic.CONSTRUCTIVE;
+			break;
+		default:	// if something weird happened
+			retVal = Heuristic.ERROR;
+			break;
+		}
+		return retVal;
 	}
 }
@@ -0,0 +1,512 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Constructive engine for the Knight's Tour on large boards, after
+ * Parberry's divide and conquer method. Boards with both sides of at
+ * least 12 squares are split into four quadrants whose sides are even
+ * and differ by at most 2, and the quadrants are split again until every
+ * piece matches one of a small library of closed tours. The tours in the
+ * library are structured: in every corner they use the move from the
+ * corner square to the square 2 down and 1 across, and the move between
+ * the squares (1,0) and (0,2), mirrored for each corner. Four quadrant
+ * tours are stitched into one by removing one of those moves from each
+ * quadrant at the centre and adding four moves that cross between them.
+ * The outer corners are never touched, so the combined tour is structured
+ * as well. No move is ever undone, so a tour of n x n squares is built in
+ * O(n^2) time. The result is a closed tour, which is started from the
+ * requested square.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class KnightConstruct implements KnightEngine {
+	/* row and column change of the knight's moves in clockwise order */
+	private static final int[] X_OFFSET = {-2, -1, 1, 2, 2, 1, -1, -2};
+	private static final int[] Y_OFFSET = {1, 2, 2, 1, -1, -2, -2, -1};
+
+	/* the smallest board side that is split into quadrants */
+	private static final int SPLIT_SIZE = 12;
+
+	/* moves removed at the centre of a join, as row and column offsets from the centre square */
+	private static final int[][] JOIN_REMOVED = {
+		{-1, -1, -3, -2},	// top left quadrant, its corner move
+		{-1, 2, -2, 0},	// top right quadrant, its (1,0) to (0,2) move
+		{0, -3, 1, -1},	// bottom left quadrant, its (1,0) to (0,2) move
+		{0, 0, 2, 1}	// bottom right quadrant, its corner move
+	};
+
+	/* moves added at the centre of a join, linking the four quadrant tours into one */
+	private static final int[][] JOIN_ADDED = {
+		{-1, -1, 0, -3},
+		{-3, -2, -2, 0},
+		{-1, 2, 0, 0},
+		{1, -1, 2, 1}
+	};
+
+	/* structured 6x6 tour, move numbers by row */
+	private static final int[][] TOUR_6X6 = {
+		{ 12,  21,   2,  29,  14,  23},
+		{  1,  30,  13,  22,   3,  28},
+		{ 20,  11,  36,  31,  24,  15},
+		{ 35,   8,  33,  16,  27,   4},
+		{ 10,  19,   6,  25,  32,  17},
+		{  7,  34,   9,  18,   5,  26}
+	};
+
+	/* structured 6x8 tour, move numbers by row */
+	private static final int[][] TOUR_6X8 = {
+		{  4,  27,   2,  17,   6,  19,  34,  43},
+		{  1,  16,   5,  28,  35,  42,   7,  20},
+		{ 26,   3,  36,  41,  18,  29,  44,  33},
+		{ 15,  48,  13,  30,  45,  40,  21,   8},
+		{ 12,  25,  46,  37,  10,  23,  32,  39},
+		{ 47,  14,  11,  24,  31,  38,   9,  22}
+	};
+
+	/* structured 8x6 tour, move numbers by row */
+	private static final int[][] TOUR_8X6 = {
+		{ 42,  17,   2,  21,  32,  37},
+		{  1,  20,  41,  36,   3,  22},
+		{ 16,  43,  18,  31,  38,  33},
+		{ 19,  48,  35,  40,  23,   4},
+		{ 44,  15,  30,  47,  34,  39},
+		{  9,  12,  45,  26,   5,  24},
+		{ 14,  29,  10,   7,  46,  27},
+		{ 11,   8,  13,  28,  25,   6}
+	};
+
+	/* structured 8x8 tour, move numbers by row */
+	private static final int[][] TOUR_8X8 = {
+		{  4,  19,   2,  41,   6,  21,  24,  55},
+		{  1,  42,   5,  20,  59,  56,   7,  22},
+		{ 18,   3,  64,  57,  40,  23,  54,  25},
+		{ 43,  32,  37,  60,  63,  58,  39,   8},
+		{ 36,  17,  62,  47,  38,  51,  26,  53},
+		{ 31,  44,  33,  50,  61,  48,   9,  12},
+		{ 16,  35,  46,  29,  14,  11,  52,  27},
+		{ 45,  30,  15,  34,  49,  28,  13,  10}
+	};
+
+	/* structured 8x10 tour, move numbers by row */
+	private static final int[][] TOUR_8X10 = {
+		{  4,   7,   2,  23,  68,   9,  46,  25,  70,  11},
+		{  1,  22,   5,   8,  45,  24,  69,  10,  47,  26},
+		{  6,   3,  20,  79,  56,  67,  44,  71,  12,  75},
+		{ 21,  80,  37,  58,  43,  72,  77,  74,  27,  48},
+		{ 36,  19,  62,  55,  78,  57,  66,  49,  76,  13},
+		{ 61,  38,  59,  42,  65,  54,  73,  30,  51,  28},
+		{ 18,  35,  40,  63,  16,  33,  50,  53,  14,  31},
+		{ 39,  60,  17,  34,  41,  64,  15,  32,  29,  52}
+	};
+
+	/* structured 10x8 tour, move numbers by row */
+	private static final int[][] TOUR_10X8 = {
+		{  4,  19,   2,  43,   6,  21,  24,  65},
+		{  1,  44,   5,  20,  41,  66,   7,  22},
+		{ 18,   3,  42,  77,  72,  23,  64,  25},
+		{ 45,  80,  17,  40,  67,  76,  71,   8},
+		{ 16,  39,  78,  73,  70,  59,  26,  63},
+		{ 79,  46,  55,  60,  75,  68,   9,  58},
+		{ 38,  15,  74,  69,  54,  57,  62,  27},
+		{ 49,  52,  47,  56,  61,  30,  33,  10},
+		{ 14,  37,  50,  53,  12,  35,  28,  31},
+		{ 51,  48,  13,  36,  29,  32,  11,  34}
+	};
+
+	/* structured 10x10 tour, move numbers by row */
+	private static final int[][] TOUR_10X10 = {
+		{  4,  79,   2,  37,   6,  75,  70,  13,   8,  11},
+		{  1,  36,   5,  80,  73,  38,   7,  10,  69,  14},
+		{ 78,   3, 100,  39,  76,  81,  74,  71,  12,   9},
+		{ 35,  32,  77,  96,  99,  72,  65,  82,  15,  68},
+		{ 30,  97,  34,  93,  40,  95,  86,  67,  46,  63},
+		{ 33,  52,  31,  98,  91,  66,  83,  64,  85,  16},
+		{ 54,  29,  92,  41,  94,  87,  90,  47,  62,  45},
+		{ 51,  26,  53,  88,  57,  48,  59,  84,  17,  20},
+		{ 28,  55,  24,  49,  42,  89,  22,  19,  44,  61},
+		{ 25,  50,  27,  56,  23,  58,  43,  60,  21,  18}
+	};
+
+	/* structured 10x12 tour, move numbers by row */
+	private static final int[][] TOUR_10X12 = {
+		{ 28, 103,   2, 117,  30, 101,   4,  75,  32,  11,   6,   9},
+		{  1, 116,  29, 102,   3,  76,  31,  90,   5,   8,  33,  12},
+		{104,  27, 120,  93, 118,  89, 100,  77,  74,  79,  10,   7},
+		{113,  56, 115,  98, 109,  94,  91,  80,  87,  36,  13,  34},
+		{ 26, 105, 112, 119,  92,  99,  88,  95,  78,  73,  82,  37},
+		{ 55, 114,  57, 108,  97, 110,  71,  86,  81,  64,  35,  14},
+		{ 48,  25, 106, 111,  70,  85,  96,  67,  72,  83,  38,  65},
+		{ 51,  54,  49,  58, 107,  68,  43,  84,  63,  66,  15,  18},
+		{ 24,  47,  52,  69,  22,  45,  60,  41,  20,  17,  62,  39},
+		{ 53,  50,  23,  46,  59,  42,  21,  44,  61,  40,  19,  16}
+	};
+
+	/* structured 12x10 tour, move numbers by row */
+	private static final int[][] TOUR_12X10 = {
+		{  4,   7,   2,  37,  58,   9,  26,  33,  40,  11},
+		{  1,  92,   5,   8,  25,  38,  57,  10,  27,  32},
+		{  6,   3,  36,  91,  64,  59,  34,  39,  12,  41},
+		{ 93, 120, 113,  24,  35,  90,  63,  56,  31,  28},
+		{114,  23, 108,  89, 110,  65,  60,  29,  42,  13},
+		{119,  94, 117, 112, 107,  62,  55,  66,  53,  30},
+		{ 22, 115, 104, 109,  88, 111,  76,  61,  14,  43},
+		{ 95, 118,  87, 116, 103, 106,  71,  54,  67,  52},
+		{ 82,  21, 100, 105,  86,  77, 102,  75,  44,  15},
+		{ 99,  96,  83,  78, 101,  72,  47,  70,  51,  68},
+		{ 20,  81,  98,  85,  18,  79,  74,  49,  16,  45},
+		{ 97,  84,  19,  80,  73,  48,  17,  46,  69,  50}
+	};
+	/* Private variables for KnightConstruct */
+	private int boardSize;	// the size of one dimension of the board
+	private int maxMoves;	// the number of squares on the board
+	private int[] link;	// the two neighbours of each square on the closed tour, -1 while unlinked
+	private int[] moveNums;	// the move number of each square, 0 before a run
+	private long attemptedMoves;	// the number of squares placed on the tour
+
+	/**
+	 * Sets up the constructive engine for a board
+	 *
+	 * @param initSize - the size of one dimension of the board, see supports()
+	 *
+	 */
+	public KnightConstruct(int initSize) {
+		if(!supports(initSize)) {
+			throw new IllegalArgumentException("no structured tour is built for board size " + initSize);
+		}
+
+		boardSize = initSize;
+		maxMoves = initSize*initSize;
+		moveNums = new int[maxMoves];
+	}
+
+	/**
+	 * Checks whether a tour can be built for a board size. Closed tours
+	 * only exist on boards with an even number of squares, and the library
+	 * starts at 6x6.
+	 *
+	 * @param boardSize - the size of one dimension of the board
+	 * @return true if the size is even and at least 6
+	 *
+	 */
+	public static boolean supports(int boardSize) {
+		return boardSize >= 6 && boardSize % 2 == 0;
+	}
+
+	/**
+	 * Builds the tour and numbers it from the given starting square
+	 *
+	 * @param xPos - starting x position
+	 * @param yPos - starting y position
+	 * @return true, a tour always exists for a supported size
+	 *
+	 */
+	public boolean runKnightBoard(int xPos, int yPos) {
+		int previous = -1;
+		int current = square(xPos, yPos);
+
+		link = new int[maxMoves*2];
+		build(0, 0, boardSize, boardSize);
+
+		// walk the closed tour once around from the start
+		for(int move = 1; move <= maxMoves; move++) {
+			int next = link[current*2] != previous ? link[current*2] : link[current*2 + 1];
+			moveNums[current] = move;
+			previous = current;
+			current = next;
+		}
+
+		// the links are only needed while building
+		link = null;
+		attemptedMoves = maxMoves;
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setCancelFlag(java.util.concurrent.atomic.AtomicBoolean)
+	 */
+	public void setCancelFlag(AtomicBoolean cancel) {
+		// the construction never searches, so there is nothing to stop
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setControl(SearchControl)
+	 */
+	public void setControl(SearchControl control) {
+		// the construction takes linear time, so it is never stopped early
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setProgress(SearchProgress)
+	 */
+	public void setProgress(SearchProgress progress) {
+		// the construction never backtracks, so there is nothing to report
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setTieBreak(KnightBoard.TieBreak, long)
+	 */
+	public void setTieBreak(KnightBoard.TieBreak tieBreak, long seed) {
+		// no choices are made, so there are no ties to break
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setPruning(boolean, int)
+	 */
+	public void setPruning(boolean prune, int floodInterval) {
+		// no path is ever abandoned, so there is nothing to prune
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setMemo(long, DeadStateTable.Replacement)
+	 */
+	public void setMemo(long memoryBytes, DeadStateTable.Replacement replacement) {
+		// no state is ever searched twice, so there is nothing to remember
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setClosed(boolean)
+	 */
+	public void setClosed(boolean closed) {
+		// every constructed tour is closed already
+	}
+
+	/**
+	 * get attempted move count for use outside the KnightConstruct object
+	 *
+	 * @return attemptedMoves - one per square, every square is placed once
+	 *
+	 */
+	public long getAttemptedMoves() {
+		return attemptedMoves;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getPrunedMoves()
+	 */
+	public long getPrunedMoves() {
+		return 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getMemoHits()
+	 */
+	public long getMemoHits() {
+		return 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getMemoMisses()
+	 */
+	public long getMemoMisses() {
+		return 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getMemoEvictions()
+	 */
+	public long getMemoEvictions() {
+		return 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getTies()
+	 */
+	public long getTies() {
+		return 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getBacktracks()
+	 */
+	public long getBacktracks() {
+		return 0;
+	}
+
+	/**
+	 * Retrieves the move number at which the tour reached a square
+	 *
+	 * @param xPos - the x coordinate of the square
+	 * @param yPos - the y coordinate of the square
+	 * @return the move number, or 0 before a run
+	 *
+	 */
+	public int getMoveNum(int xPos, int yPos) {
+		return moveNums[square(xPos, yPos)];
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getDirections()
+	 */
+	public byte[] getDirections() {
+		int[] order = new int[maxMoves];
+		byte[] retVal = new byte[maxMoves-1];
+
+		if(moveNums[0] == 0) {
+			return new byte[0];
+		}
+
+		for(int square = 0; square < maxMoves; square++) {
+			order[moveNums[square]-1] = square;
+		}
+		for(int index = 0; index < retVal.length; index++) {
+			int xMove = order[index+1] / boardSize - order[index] / boardSize;
+			int yMove = order[index+1] % boardSize - order[index] % boardSize;
+			int dir = 0;
+			while(X_OFFSET[dir] != xMove || Y_OFFSET[dir] != yMove) {
+				dir++;
+			}
+			retVal[index] = (byte) dir;
+		}
+		return retVal;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#square(int, int)
+	 */
+	public int square(int xPos, int yPos) {
+		return xPos*boardSize + yPos;
+	}
+
+	/**
+	 * Builds a structured closed tour on a rectangle of the board, either
+	 * straight from the library or from four quadrant tours
+	 *
+	 * @param row - the top row of the rectangle
+	 * @param col - the left column of the rectangle
+	 * @param height - the number of rows, even
+	 * @param width - the number of columns, even and within 2 of height
+	 *
+	 */
+	private void build(int row, int col, int height, int width) {
+		int topRows;
+		int leftCols;
+
+		if(height < SPLIT_SIZE || width < SPLIT_SIZE) {
+			place(row, col, baseTour(height, width));
+			return;
+		}
+
+		// halve each side, rounded to an even number of squares
+		topRows = 2*(height/4);
+		leftCols = 2*(width/4);
+		build(row, col, topRows, leftCols);
+		build(row, col + leftCols, topRows, width - leftCols);
+		build(row + topRows, col, height - topRows, leftCols);
+		build(row + topRows, col + leftCols, height - topRows, width - leftCols);
+		join(row + topRows, col + leftCols);
+	}
+
+	/**
+	 * Links the squares of a library tour into the board's tour
+	 *
+	 * @param row - the board row of the tour's top row
+	 * @param col - the board column of the tour's left column
+	 * @param tour - the move number of every square of the tour
+	 *
+	 */
+	private void place(int row, int col, int[][] tour) {
+		int count = tour.length*tour[0].length;
+		int[] order = new int[count];
+
+		// board square at each move of the tour
+		for(int xIndex = 0; xIndex < tour.length; xIndex++) {
+			for(int yIndex = 0; yIndex < tour[xIndex].length; yIndex++) {
+				order[tour[xIndex][yIndex] - 1] = square(row + xIndex, col + yIndex);
+			}
+		}
+
+		// each square is linked to the squares before and after it
+		for(int move = 0; move < count; move++) {
+			int current = order[move];
+			link[current*2] = order[(move + count - 1) % count];
+			link[current*2 + 1] = order[(move + 1) % count];
+		}
+	}
+
+	/**
+	 * Stitches the four quadrant tours meeting at a centre square into a
+	 * single tour
+	 *
+	 * @param row - the top row of the bottom quadrants
+	 * @param col - the left column of the right quadrants
+	 *
+	 */
+	private void join(int row, int col) {
+		// open each quadrant's tour at the centre
+		for(int[] move : JOIN_REMOVED) {
+			int from = square(row + move[0], col + move[1]);
+			int to = square(row + move[2], col + move[3]);
+			relink(from, to, -1);
+			relink(to, from, -1);
+		}
+
+		// and close them up again across the quadrants
+		for(int[] move : JOIN_ADDED) {
+			int from = square(row + move[0], col + move[1]);
+			int to = square(row + move[2], col + move[3]);
+			relink(from, -1, to);
+			relink(to, -1, from);
+		}
+	}
+
+	/**
+	 * Replaces one of a square's neighbours on the tour
+	 *
+	 * @param current - the square whose link changes
+	 * @param oldLink - the neighbour to replace, -1 for the open link
+	 * @param newLink - the new neighbour, -1 to leave the link open
+	 *
+	 */
+	private void relink(int current, int oldLink, int newLink) {
+		if(link[current*2] == oldLink) {
+			link[current*2] = newLink;
+		} else {
+			link[current*2 + 1] = newLink;
+		}
+	}
+
+	/**
+	 * Looks up the library tour for a rectangle
+	 *
+	 * @param height - the number of rows
+	 * @param width - the number of columns
+	 * @return the move numbers of the tour, by row
+	 *
+	 */
+	private static int[][] baseTour(int height, int width) {
+		int[][] retVal;
+
+		switch (height*100 + width) {
+		case 606:
+			retVal = TOUR_6X6;
+			break;
+		case 608:
+			retVal = TOUR_6X8;
+			break;
+		case 806:
+			retVal = TOUR_8X6;
+			break;
+		case 808:
+			retVal = TOUR_8X8;
+			break;
+		case 810:
+			retVal = TOUR_8X10;
+			break;
+		case 1008:
+			retVal = TOUR_10X8;
+			break;
+		case 1010:
+			retVal = TOUR_10X10;
+			break;
+		case 1012:
+			retVal = TOUR_10X12;
+			break;
+		case 1210:
+			retVal = TOUR_12X10;
+			break;
+		default:	// the splitting never produces any other size
+			throw new IllegalStateException("no structured tour for " + height + "x" + width);
+		}
+		return retVal;
+	}
+}
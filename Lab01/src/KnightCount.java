@@ -0,0 +1,273 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Counts every tour from a starting square on a board small enough for
+ * the bitboard engine. The search tree is expanded down to paths of a
+ * fixed number of squares, and the tours below each path are counted on
+ * a pool of threads. The symmetries of the board that leave the starting
+ * square where it is map paths onto paths with the same number of tours,
+ * so only one path of each such group is searched and its count is
+ * multiplied by the size of the group.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class KnightCount {
+	/* Private variables for KnightCount */
+	private MoveGraph graph;	// the board shape and the piece's moves
+	private int threads;	// the number of paths counted at once
+	private int splitDepth;	// the number of squares on each path counted on its own
+	private boolean closed;	// only count tours that end a move away from the start
+	private boolean prune;	// abandon paths that strand an unvisited square
+	private int floodInterval;	// path lengths between connectivity checks, 0 for none
+	private ThreadLocal<KnightBitboard> engines;	// the engine of each counting thread
+	private long attemptedMoves;	// attempted moves of the last count
+	private int symmetries;	// symmetries that leave the last starting square in place
+	private int paths;	// paths of the last count
+	private int searches;	// paths of the last count that were actually searched
+
+	/**
+	 * Sets up counting on a board
+	 *
+	 * @param graph - the board shape and the piece's moves, small enough for the bitboard
+	 * @param threads - the number of paths counted at once
+	 * @param splitDepth - the number of squares on each path counted on its own
+	 *
+	 */
+	public KnightCount(MoveGraph graph, int threads, int splitDepth) {
+		if(!KnightBitboard.fits(graph)) {
+			throw new IllegalArgumentException("tours can only be counted on boards up to "
+					+ KnightBitboard.MAX_SIZE + "x" + KnightBitboard.MAX_SIZE);
+		}
+
+		this.graph = graph;
+		this.threads = threads;
+		this.splitDepth = Math.min(splitDepth, graph.getSize()-1);
+		engines = ThreadLocal.withInitial(this::newEngine);
+	}
+
+	/**
+	 * Only counts closed tours, whose last square is a move away from the
+	 * starting square
+	 *
+	 * @param closed - true to only count closed tours
+	 *
+	 */
+	public void setClosed(boolean closed) {
+		this.closed = closed;
+	}
+
+	/**
+	 * Turns on the pruning checks of the engine, which only ever abandon
+	 * paths with no tours below them, so the count is the same
+	 *
+	 * @param prune - true to run the checks after every move
+	 * @param floodInterval - path lengths between connectivity checks, 0 for none
+	 *
+	 */
+	public void setPruning(boolean prune, int floodInterval) {
+		this.prune = prune;
+		this.floodInterval = floodInterval;
+	}
+
+	/**
+	 * Counts the tours from a starting square
+	 *
+	 * @param xPos - the x coordinate of the starting square
+	 * @param yPos - the y coordinate of the starting square
+	 * @return the number of tours
+	 * @throws InterruptedException if interrupted while waiting for the counts
+	 *
+	 */
+	public long count(int xPos, int yPos) throws InterruptedException {
+		KnightBitboard root = newEngine();
+		int start = graph.square(xPos, yPos);
+		List<int[]> prefixes = new ArrayList<int[]>();
+		List<int[]> searched = new ArrayList<int[]>();
+		List<Integer> weights = new ArrayList<Integer>();
+		List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+		List<Integer> stabilizer = new ArrayList<Integer>();
+		long retVal = 0;
+		ExecutorService pool;
+
+		// the symmetries that leave the starting square in place
+		for(int sym = 0; sym < MoveGraph.SYMMETRIES; sym++) {
+			if(graph.hasSymmetry(sym) && graph.transform(sym, start) == start) {
+				stabilizer.add(sym);
+			}
+		}
+		symmetries = stabilizer.size();
+
+		// the paths are shorter than a tour, so none is found here
+		root.expand(root.square(xPos, yPos), splitDepth, prefixes);
+		attemptedMoves = root.getAttemptedMoves();
+		paths = prefixes.size();
+
+		// one path of every group, weighted by the size of the group
+		for(int[] prefix : prefixes) {
+			int weight = orbit(prefix, stabilizer);
+			if(weight > 0) {
+				searched.add(prefix);
+				weights.add(weight);
+			}
+		}
+		searches = searched.size();
+
+		pool = Executors.newFixedThreadPool(threads);
+		try {
+			for(int[] prefix : searched) {
+				results.add(pool.submit(() -> countFrom(prefix)));
+			}
+
+			for(int index = 0; index < results.size(); index++) {
+				long[] result = results.get(index).get();
+				retVal += result[0] * weights.get(index);
+				attemptedMoves += result[1];
+			}
+		} catch(ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		return retVal;
+	}
+
+	/**
+	 * get attempted move count of the last count, over every path that
+	 * was searched
+	 *
+	 * @return the number of attempted moves
+	 *
+	 */
+	public long getAttemptedMoves() {
+		return attemptedMoves;
+	}
+
+	/**
+	 * get the number of symmetries of the board that leave the last
+	 * starting square in place
+	 *
+	 * @return 1 to 8, 1 if no symmetry could be used
+	 *
+	 */
+	public int getSymmetries() {
+		return symmetries;
+	}
+
+	/**
+	 * get the number of paths the last count was split into
+	 *
+	 * @return the number of paths
+	 *
+	 */
+	public int getPaths() {
+		return paths;
+	}
+
+	/**
+	 * get the number of paths of the last count that were searched, the
+	 * rest being counted by symmetry
+	 *
+	 * @return the number of paths searched
+	 *
+	 */
+	public int getSearches() {
+		return searches;
+	}
+
+	/**
+	 * Counts the tours below one path on the calling thread's engine
+	 *
+	 * @param prefix - the path, starting square first
+	 * @return the number of tours and the number of attempted moves
+	 *
+	 */
+	private long[] countFrom(int[] prefix) {
+		KnightBitboard engine = engines.get();
+		long tours = 0;
+
+		if(engine.runFrom(prefix)) {
+			tours++;
+			while(engine.nextTour()) {
+				tours++;
+			}
+		}
+		return new long[] {tours, engine.getAttemptedMoves()};
+	}
+
+	/**
+	 * Checks whether a path is the one searched for its group, the lowest
+	 * of its images under the symmetries in squares order, and if so
+	 * counts the distinct images
+	 *
+	 * @param prefix - the path, in bitboard squares
+	 * @param stabilizer - the symmetries that leave the starting square in place
+	 * @return the size of the group, or 0 if another path is searched for it
+	 *
+	 */
+	private int orbit(int[] prefix, List<Integer> stabilizer) {
+		List<int[]> images = new ArrayList<int[]>();
+
+		for(int sym : stabilizer) {
+			int[] image = new int[prefix.length];
+			int order = 0;
+
+			for(int index = 0; index < prefix.length; index++) {
+				int square = prefix[index];
+				int target = graph.transform(sym, graph.square(square / KnightBitboard.MAX_SIZE,
+						square % KnightBitboard.MAX_SIZE));
+				image[index] = target / graph.getCols() * KnightBitboard.MAX_SIZE + target % graph.getCols();
+				if(order == 0) {
+					order = Integer.compare(image[index], prefix[index]);
+				}
+			}
+
+			if(order < 0) {
+				// a lower image is searched instead
+				return 0;
+			}
+			if(!contains(images, image)) {
+				images.add(image);
+			}
+		}
+		return images.size();
+	}
+
+	/**
+	 * Checks whether a list of paths holds a path
+	 *
+	 * @param paths - the paths
+	 * @param path - the path to look for
+	 * @return true if an equal path is in the list
+	 *
+	 */
+	private static boolean contains(List<int[]> paths, int[] path) {
+		for(int[] current : paths) {
+			if(Arrays.equals(current, path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Builds an engine that tries moves in plain clockwise order, which is
+	 * the fastest way through the whole tree
+	 *
+	 * @return the new engine
+	 *
+	 */
+	private KnightBitboard newEngine() {
+		KnightBitboard retVal = new KnightBitboard(KnightBoard.Heuristic.NO_HEUR, graph);
+
+		retVal.setClosed(closed);
+		retVal.setPruning(prune, floodInterval);
+		return retVal;
+	}
+}
@@ -0,0 +1,182 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Common operations of the Knight's Tour engines, so that a board can be
+ * solved by KnightBitboard, KnightSearch or KnightConstruct
+ * interchangeably. The operations that only a search has, splitting it
+ * into subtrees and carrying it on from a checkpoint, are in
+ * KnightSearchEngine. Squares are passed around as indices in the
+ * engine's own layout, which callers get from square().
+ *
+ * @author Jason Egbert
+ *
+ */
+interface KnightEngine {
+	/**
+	 * Runs the tour from the given starting square
+	 *
+	 * @param xPos - starting x position
+	 * @param yPos - starting y position
+	 * @return false for failure, true for success
+	 *
+	 */
+	boolean runKnightBoard(int xPos, int yPos);
+
+	/**
+	 * Sets a flag that stops the search once it is raised by another thread.
+	 * The flag is polled every few thousand attempted moves.
+	 *
+	 * @param cancel - the shared flag, or null to never stop early
+	 *
+	 */
+	void setCancelFlag(AtomicBoolean cancel);
+
+	/**
+	 * Sets the limits of the search. The engine charges its attempted
+	 * moves to the control when it polls the cancel flag and stops once
+	 * the control reports the run is over.
+	 *
+	 * @param control - the shared limits, or null for none
+	 *
+	 */
+	void setControl(SearchControl control);
+
+	/**
+	 * Sets where the engine reports its moves, path length and backtracks
+	 * while it runs. Reports are only made when the cancel flag is polled.
+	 *
+	 * @param progress - the shared progress view, or null for no reports
+	 *
+	 */
+	void setProgress(SearchProgress progress);
+
+	/**
+	 * Restricts the search to closed tours, whose last square is a
+	 * knight's move away from the starting square
+	 *
+	 * @param closed - true to only accept closed tours
+	 *
+	 */
+	void setClosed(boolean closed);
+
+	/**
+	 * Selects how Warnsdorff's heuristic orders candidates of equal degree
+	 *
+	 * @param tieBreak - the tie-break policy
+	 * @param seed - the seed of the random policy
+	 *
+	 */
+	void setTieBreak(KnightBoard.TieBreak tieBreak, long seed);
+
+	/**
+	 * Turns on checks that abandon a path as soon as some unvisited square
+	 * can no longer be reached, whatever the heuristic
+	 *
+	 * @param prune - true to run the checks after every move
+	 * @param floodInterval - path lengths between connectivity checks, 0 for none
+	 *
+	 */
+	void setPruning(boolean prune, int floodInterval);
+
+	/**
+	 * Turns on a table of states proven to lead to no tour, so that the
+	 * exhaustive search without a heuristic doesn't search them again.
+	 * Engines that can't key their states ignore it.
+	 *
+	 * @param memoryBytes - the most memory the table may use, 0 for no table
+	 * @param replacement - how the table makes room for new states
+	 *
+	 */
+	void setMemo(long memoryBytes, DeadStateTable.Replacement replacement);
+
+	/**
+	 * get attempted move count for use outside the engine
+	 *
+	 * @return the number of moves attempted by the last run
+	 *
+	 */
+	long getAttemptedMoves();
+
+	/**
+	 * get the number of moves of the last run where more than one
+	 * candidate shared the lowest Warnsdorff degree
+	 *
+	 * @return the number of ties
+	 *
+	 */
+	long getTies();
+
+	/**
+	 * get the number of moves of the last run that were abandoned by the
+	 * pruning checks
+	 *
+	 * @return the number of pruned moves
+	 *
+	 */
+	long getPrunedMoves();
+
+	/**
+	 * get the number of times the last run took a move back because a
+	 * square had run out of candidates
+	 *
+	 * @return the number of backtracks
+	 *
+	 */
+	long getBacktracks();
+
+	/**
+	 * get the number of states of the last run found in the dead state
+	 * table, each of which was abandoned without being searched
+	 *
+	 * @return the number of table hits
+	 *
+	 */
+	long getMemoHits();
+
+	/**
+	 * get the number of states of the last run looked up in the dead
+	 * state table and not found
+	 *
+	 * @return the number of table misses
+	 *
+	 */
+	long getMemoMisses();
+
+	/**
+	 * get the number of stored states the last run dropped from the dead
+	 * state table to make room for new ones
+	 *
+	 * @return the number of evictions
+	 *
+	 */
+	long getMemoEvictions();
+
+	/**
+	 * Retrieves the move number at which the tour reached a square
+	 *
+	 * @param xPos - the x coordinate of the square
+	 * @param yPos - the y coordinate of the square
+	 * @return the move number, or 0 if the square is not on the current path
+	 *
+	 */
+	int getMoveNum(int xPos, int yPos);
+
+	/**
+	 * Returns the tour found by the last run as the direction of each
+	 * move, which is all that is needed to follow it from its start
+	 *
+	 * @return the clockwise direction, 0 to 7, of every move of the path
+	 *
+	 */
+	byte[] getDirections();
+
+	/**
+	 * Returns the index of a square in the engine's layout
+	 *
+	 * @param xPos - the x coordinate of the square
+	 * @param yPos - the y coordinate of the square
+	 * @return the square's index
+	 *
+	 */
+	int square(int xPos, int yPos);
+}
@@ -0,0 +1,524 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Warnsdorff search for boards too big for the other engines, with a
+ * hundred million squares or more. Nothing is kept per square on the
+ * heap: the visited squares are a bitset, the degrees are packed two to
+ * a byte and the path is one byte a move, all in direct buffers, about
+ * 1.6 bytes a square in all. Moves are worked out from the coordinates
+ * of the knight, so there is no move table either.
+ *
+ * Each byte of the path holds the direction of the move in its lowest 3
+ * bits and the index of the next candidate to try from that square above
+ * them. That is all backtracking needs, as a square's candidates depend
+ * only on the squares visited before it, so they are sorted again rather
+ * than kept. Candidates are tried in the same order as KnightSearch, so
+ * tours, attempted moves, ties and backtracks are the same as its own.
+ * The tour is written straight from the path as a compact tour, and is
+ * never turned into move numbers.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class KnightLarge {
+	/* the control is charged once every POLL_MASK+1 attempted moves, and when the budget runs out */
+	private static final long POLL_MASK = 0xFFF;
+
+	/* Private variables for KnightLarge */
+	private MoveGraph graph;	// the board shape and the piece's moves
+	private int rows;	// the number of rows of the board
+	private int cols;	// the number of columns of the board
+	private int maxMoves;	// the number of squares on the board
+	private int[] xOffset;	// the x offset of each clockwise direction
+	private int[] yOffset;	// the y offset of each clockwise direction
+	private ByteBuffer visited;	// one bit per square, set once it is on the path
+	private ByteBuffer degree;	// live count of neighbours of each square, 4 bits a square
+	private ByteBuffer path;	// per move, its direction and above it the next candidate to try
+	private int[] candDir;	// the candidate directions of the current square, in the order they will be tried
+	private int[] sortKey;	// the degree of each candidate
+	private long[] tieKey;	// scratch tie-break keys for candidates of equal degree
+	private KnightBoard.TieBreak tieBreak;	// how candidates of equal degree are ordered
+	private int start;	// the starting square, x*cols+y
+	private int depth;	// the number of squares on the current path
+	private long attemptedMoves;	// the number of moves attempted to complete the tour
+	private long ties;	// moves where more than one candidate had the lowest degree
+	private long backtracks;	// moves taken back because a square ran out of candidates
+	private SearchControl control;	// the budget and deadline of the run, null for none
+	private long charged;	// attempted moves already charged to the control
+	private long nextPoll;	// the attempted moves at the next charge
+
+	/**
+	 * Allocates the off-heap state for a board
+	 *
+	 * @param graph - the board shape and the piece's moves
+	 *
+	 */
+	public KnightLarge(MoveGraph graph) {
+		this.graph = graph;
+		rows = graph.getRows();
+		cols = graph.getCols();
+		maxMoves = graph.getSize();
+		xOffset = new int[8];
+		yOffset = new int[8];
+		for(int dir = 0; dir < 8; dir++) {
+			xOffset[dir] = graph.getXOffset(dir);
+			yOffset[dir] = graph.getYOffset(dir);
+		}
+		visited = ByteBuffer.allocateDirect((maxMoves+7) / 8);
+		degree = ByteBuffer.allocateDirect((maxMoves+1) / 2);
+		path = ByteBuffer.allocateDirect(maxMoves);
+		candDir = new int[8];
+		sortKey = new int[8];
+		tieKey = new long[8];
+		tieBreak = KnightBoard.TieBreak.LOWEST;
+	}
+
+	/**
+	 * Sets how candidates of equal degree are ordered. The random policy
+	 * is left out, as a square's candidates are sorted again after every
+	 * backtrack and have to come out in the same order each time.
+	 *
+	 * @param tieBreak - the lowest index, Pohl or Roth policy
+	 *
+	 */
+	public void setTieBreak(KnightBoard.TieBreak tieBreak) {
+		if(tieBreak == KnightBoard.TieBreak.RANDOM) {
+			throw new IllegalArgumentException("the random tie-break can't be replayed");
+		}
+		this.tieBreak = tieBreak;
+	}
+
+	/**
+	 * Sets the budget and deadline of the next run
+	 *
+	 * @param control - the control to charge, null for none
+	 *
+	 */
+	public void setControl(SearchControl control) {
+		this.control = control;
+	}
+
+	/**
+	 * Runs the tour from the given starting square
+	 *
+	 * @param xPos - starting x position
+	 * @param yPos - starting y position
+	 * @return false for failure, true for success
+	 *
+	 */
+	public boolean runKnightBoard(int xPos, int yPos) {
+		boolean retVal;
+		int xCur = xPos;	// the coordinates of the knight
+		int yCur = yPos;
+
+		reset();
+		start = xPos*cols + yPos;
+		attemptedMoves++;
+		visit(xPos, yPos);
+
+		if(graph.isConfined()) {
+			// the piece never leaves its own share of the squares
+			return finish(false);
+		}
+
+		retVal = true;
+		nextPoll = control != null ? pollAt() : Long.MAX_VALUE;
+		while(depth < maxMoves) {
+			int top = depth-1;
+			int next = path.get(top) >>> 3;
+			int count = candidates(xCur, yCur, next == 0);
+
+			if(next < count) {
+				// try the next candidate from the current square
+				int dir = candDir[next];
+				path.put(top, (byte) (dir | (next+1) << 3));
+				attemptedMoves++;
+				xCur += xOffset[dir];
+				yCur += yOffset[dir];
+				visit(xCur, yCur);
+
+				if(attemptedMoves == nextPoll && depth < maxMoves && charge()) {
+					retVal = false;
+					break;
+				}
+			} else {
+				// out of candidates, backtrack
+				if(top == 0) {
+					retVal = false;
+					break;
+				}
+				backtracks++;
+				leave(xCur, yCur);
+				int dir = path.get(top-1) & 7;
+				xCur -= xOffset[dir];
+				yCur -= yOffset[dir];
+			}
+		}
+
+		return finish(retVal);
+	}
+
+	/**
+	 * Clears the state of the last run
+	 *
+	 */
+	private void reset() {
+		clear(visited);
+		clear(degree);
+		clear(path);
+		depth = 0;
+		attemptedMoves = 0;
+		ties = 0;
+		backtracks = 0;
+		charged = 0;
+		if(control != null) {
+			control.start();
+		}
+
+		// every square starts with all of its on-board moves
+		for(int x = 0; x < rows; x++) {
+			for(int y = 0; y < cols; y++) {
+				int count = 0;
+				for(int dir = 0; dir < 8; dir++) {
+					if(onBoard(x + xOffset[dir], y + yOffset[dir])) {
+						count++;
+					}
+				}
+				addDegree(x*cols + y, count);
+			}
+		}
+	}
+
+	/**
+	 * Zeroes a buffer
+	 *
+	 * @param buffer - the buffer to clear
+	 *
+	 */
+	private static void clear(ByteBuffer buffer) {
+		int index = 0;
+
+		for(; index + 8 <= buffer.capacity(); index += 8) {
+			buffer.putLong(index, 0);
+		}
+		for(; index < buffer.capacity(); index++) {
+			buffer.put(index, (byte) 0);
+		}
+	}
+
+	/**
+	 * Charges the rest of the run to the control
+	 *
+	 * @param result - the result of the run
+	 * @return result
+	 *
+	 */
+	private boolean finish(boolean result) {
+		if(control != null) {
+			control.spend(attemptedMoves - charged);
+			charged = attemptedMoves;
+		}
+		return result;
+	}
+
+	/**
+	 * Charges the moves since the last charge to the control
+	 *
+	 * @return true if the control has stopped the run
+	 *
+	 */
+	private boolean charge() {
+		boolean retVal = control.charge(attemptedMoves - charged);
+
+		charged = attemptedMoves;
+		nextPoll = pollAt();
+		return retVal;
+	}
+
+	/**
+	 * Works out the attempted moves at the next charge: the next multiple of
+	 * POLL_MASK+1, or sooner if the budget runs out first, so that a run
+	 * stops at exactly its budget
+	 *
+	 * @return the attempted moves at which to charge, always after the current count
+	 *
+	 */
+	private long pollAt() {
+		long retVal = (attemptedMoves | POLL_MASK) + 1;
+		long left = control != null ? control.getMovesLeft() : Long.MAX_VALUE;
+
+		// moves not yet charged already count against what is left
+		if(left < retVal - charged) {
+			retVal = Math.max(charged + left, attemptedMoves + 1);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Moves the knight onto a square, and its neighbours each lose an
+	 * onward move
+	 *
+	 * @param x - the x coordinate of the square
+	 * @param y - the y coordinate of the square
+	 *
+	 */
+	private void visit(int x, int y) {
+		int square = x*cols + y;
+
+		visited.put(square >>> 3, (byte) (visited.get(square >>> 3) | 1 << (square & 7)));
+		if(depth < maxMoves) {
+			path.put(depth, (byte) 0);
+		}
+		depth++;
+
+		for(int dir = 0; dir < 8; dir++) {
+			int xTarget = x + xOffset[dir];
+			int yTarget = y + yOffset[dir];
+			if(onBoard(xTarget, yTarget)) {
+				addDegree(xTarget*cols + yTarget, -1);
+			}
+		}
+	}
+
+	/**
+	 * Takes the knight off the last square of the path, giving its
+	 * neighbours back the onward move it used
+	 *
+	 * @param x - the x coordinate of the square
+	 * @param y - the y coordinate of the square
+	 *
+	 */
+	private void leave(int x, int y) {
+		int square = x*cols + y;
+
+		visited.put(square >>> 3, (byte) (visited.get(square >>> 3) & ~(1 << (square & 7))));
+		depth--;
+
+		for(int dir = 0; dir < 8; dir++) {
+			int xTarget = x + xOffset[dir];
+			int yTarget = y + yOffset[dir];
+			if(onBoard(xTarget, yTarget)) {
+				addDegree(xTarget*cols + yTarget, 1);
+			}
+		}
+	}
+
+	/**
+	 * Collects the unvisited targets of a square in clockwise order and
+	 * orders them by degree, then by the tie-break policy, exactly as
+	 * KnightSearch does
+	 *
+	 * @param x - the x coordinate of the square
+	 * @param y - the y coordinate of the square
+	 * @param first - true the first time the square's candidates are sorted, when ties are counted
+	 * @return the number of candidates, left in candDir
+	 *
+	 */
+	private int candidates(int x, int y, boolean first) {
+		int count = 0;
+
+		for(int dir = 0; dir < 8; dir++) {
+			int xTarget = x + xOffset[dir];
+			int yTarget = y + yOffset[dir];
+			if(onBoard(xTarget, yTarget) && !isVisited(xTarget*cols + yTarget)) {
+				sortKey[count] = getDegree(xTarget*cols + yTarget);
+				candDir[count++] = dir;
+			}
+		}
+
+		// stable insertion sort keeps the lowest clockwise index first among ties
+		for(int index = 1; index < count; index++) {
+			int dir = candDir[index];
+			int key = sortKey[index];
+			int slot = index;
+			while(slot > 0 && sortKey[slot-1] > key) {
+				candDir[slot] = candDir[slot-1];
+				sortKey[slot] = sortKey[slot-1];
+				slot--;
+			}
+			candDir[slot] = dir;
+			sortKey[slot] = key;
+		}
+
+		if(count > 1) {
+			breakTies(x, y, count, first);
+		}
+		return count;
+	}
+
+	/**
+	 * Counts a tie for the lowest degree, then reorders each run of
+	 * candidates with equal degree by the tie-break policy
+	 *
+	 * @param x - the x coordinate of the square the candidates are moves from
+	 * @param y - the y coordinate of the square the candidates are moves from
+	 * @param count - the number of candidates, sorted by degree
+	 * @param first - true if a tie should be counted
+	 *
+	 */
+	private void breakTies(int x, int y, int count, boolean first) {
+		int begin = 0;
+
+		if(first && sortKey[0] == sortKey[1]) {
+			ties++;
+		}
+		if(tieBreak == KnightBoard.TieBreak.LOWEST) {
+			return;
+		}
+
+		while(begin < count) {
+			int end = begin+1;
+			while(end < count && sortKey[end] == sortKey[begin]) {
+				end++;
+			}
+
+			if(end - begin > 1) {
+				// stable insertion sort of the run on its tie-break keys
+				for(int index = begin; index < end; index++) {
+					tieKey[index] = tieKey(x + xOffset[candDir[index]], y + yOffset[candDir[index]]);
+				}
+				for(int index = begin+1; index < end; index++) {
+					int dir = candDir[index];
+					long key = tieKey[index];
+					int slot = index;
+					while(slot > begin && tieKey[slot-1] > key) {
+						candDir[slot] = candDir[slot-1];
+						tieKey[slot] = tieKey[slot-1];
+						slot--;
+					}
+					candDir[slot] = dir;
+					tieKey[slot] = key;
+				}
+			}
+			begin = end;
+		}
+	}
+
+	/**
+	 * Computes the tie-break key of a candidate, lower keys are tried first
+	 *
+	 * @param x - the x coordinate of the candidate
+	 * @param y - the y coordinate of the candidate
+	 * @return the key under the tie-break policy
+	 *
+	 */
+	private long tieKey(int x, int y) {
+		long retVal = 0;
+		long xDist;
+		long yDist;
+
+		switch (tieBreak) {
+		case POHL:
+			// a square whose neighbours are nearly cut off should be reached now
+			for(int dir = 0; dir < 8; dir++) {
+				int xNext = x + xOffset[dir];
+				int yNext = y + yOffset[dir];
+				if(onBoard(xNext, yNext) && !isVisited(xNext*cols + yNext)) {
+					retVal += getDegree(xNext*cols + yNext);
+				}
+			}
+			break;
+		case ROTH:
+			// squared distance from the centre, in half squares, negated
+			xDist = 2*x - (rows-1);
+			yDist = 2*y - (cols-1);
+			retVal = -(xDist*xDist + yDist*yDist);
+			break;
+		default:
+			break;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Checks whether a square is on the board
+	 *
+	 * @param x - the x coordinate
+	 * @param y - the y coordinate
+	 * @return true if it is on the board
+	 *
+	 */
+	private boolean onBoard(int x, int y) {
+		return x >= 0 && x < rows && y >= 0 && y < cols;
+	}
+
+	/**
+	 * Checks whether a square is on the path
+	 *
+	 * @param square - the square, x*cols+y
+	 * @return true if it has been visited
+	 *
+	 */
+	private boolean isVisited(int square) {
+		return (visited.get(square >>> 3) & 1 << (square & 7)) != 0;
+	}
+
+	/**
+	 * get the degree of a square, its lower or upper 4 bits
+	 *
+	 * @param square - the square, x*cols+y
+	 * @return the number of its neighbours not yet visited
+	 *
+	 */
+	private int getDegree(int square) {
+		return degree.get(square >>> 1) >> ((square & 1) << 2) & 0xF;
+	}
+
+	/**
+	 * Changes the degree of a square, which stays within 0 to 8 and so
+	 * never carries into the other square of the byte
+	 *
+	 * @param square - the square, x*cols+y
+	 * @param change - the amount to add
+	 *
+	 */
+	private void addDegree(int square, int change) {
+		degree.put(square >>> 1, (byte) (degree.get(square >>> 1) + (change << ((square & 1) << 2))));
+	}
+
+	/**
+	 * Writes the tour found by the last run as a compact tour
+	 *
+	 * @param out - the stream to write to, left open
+	 * @throws IOException if the stream fails
+	 *
+	 */
+	public void writeTour(OutputStream out) throws IOException {
+		if(depth < maxMoves) {
+			throw new IllegalStateException("no tour has been found");
+		}
+		CompactTour.write(out, graph, start, path, maxMoves-1);
+	}
+
+	/**
+	 * get the number of attempted moves of the last run
+	 *
+	 * @return attemptedMoves
+	 *
+	 */
+	public long getAttemptedMoves() {
+		return attemptedMoves;
+	}
+
+	/**
+	 * get the number of moves with a tie for the lowest degree
+	 *
+	 * @return ties
+	 *
+	 */
+	public long getTies() {
+		return ties;
+	}
+
+	/**
+	 * get the number of moves taken back
+	 *
+	 * @return backtracks
+	 *
+	 */
+	public long getBacktracks() {
+		return backtracks;
+	}
+}
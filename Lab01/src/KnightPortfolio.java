@@ -0,0 +1,351 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Races several search configurations against each other from the same
+ * starting square, one per thread, for squares where any one heuristic
+ * can backtrack for a very long time. The configurations are the border
+ * heuristic, Warnsdorff's heuristic restarted with a new random tie-break
+ * order and twice the move budget each time, and Warnsdorff's heuristic
+ * with a random tie-break order of its own seed on every other thread.
+ * The first configuration to complete a tour raises a shared flag which
+ * stops all the others, as does one that searches its whole tree without
+ * a tour, as then there is none.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class KnightPortfolio {
+	/* the move budget of the first restart, per square of the board */
+	private static final long FIRST_RESTART = 4;
+
+	/* Private variables for KnightPortfolio */
+	private Function<KnightBoard.Heuristic, KnightEngine> engines;	// builds a fresh engine for a heuristic
+	private int squares;	// the number of squares on the board
+	private long seed;	// the seed every random tie-break order is drawn from
+	private List<Entry> entries;	// the configurations, in the order they were set up
+	private AtomicBoolean stop;	// raised once the race is over
+	private volatile Entry winner;	// the configuration that completed a tour
+	private SearchControl control;	// the limits shared by every configuration, null for none
+
+	/**
+	 * Sets up the configurations of a race
+	 *
+	 * @param engines - builds a fresh engine for the board for a heuristic
+	 * @param squares - the number of squares on the board
+	 * @param threads - the number of configurations, one thread each, at least 3
+	 * @param seed - the seed every random tie-break order is drawn from
+	 *
+	 */
+	public KnightPortfolio(Function<KnightBoard.Heuristic, KnightEngine> engines, int squares, int threads,
+			long seed) {
+		this.engines = engines;
+		this.squares = squares;
+		this.seed = seed;
+		entries = new ArrayList<Entry>();
+		entries.add(new Entry("borders", KnightBoard.Heuristic.BORDERS, false, 0));
+		entries.add(new Entry("warnsdorff restarts", KnightBoard.Heuristic.WARNSDORFF, true, 0));
+		for(int index = 1; index <= Math.max(threads, 3) - 2; index++) {
+			entries.add(new Entry("warnsdorff seed " + (seed + index), KnightBoard.Heuristic.WARNSDORFF, false,
+					seed + index));
+		}
+	}
+
+	/**
+	 * Shares limits between the configurations, charged with the moves of
+	 * all of them. The restarts check it between restarts, and stop in the
+	 * middle of one when another configuration runs into it.
+	 *
+	 * @param control - the shared limits, or null for none
+	 *
+	 */
+	public void setControl(SearchControl control) {
+		this.control = control;
+	}
+
+	/**
+	 * Runs every configuration from the given starting square until one
+	 * completes a tour, or all of them have stopped
+	 *
+	 * @param xPos - starting x position
+	 * @param yPos - starting y position
+	 * @return false for failure, true for success
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 *
+	 */
+	public boolean runKnightBoard(int xPos, int yPos) throws InterruptedException {
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		ExecutorService pool = Executors.newFixedThreadPool(entries.size());
+
+		stop = new AtomicBoolean(false);
+		winner = null;
+		for(Entry entry : entries) {
+			entry.clear();
+			tasks.add(() -> {
+				if(entry.restarts) {
+					runRestarts(entry, xPos, yPos);
+				} else {
+					runOnce(entry, xPos, yPos);
+				}
+				return null;
+			});
+		}
+
+		try {
+			pool.invokeAll(tasks);
+		} finally {
+			// an interrupted wait still stops every configuration
+			stop.set(true);
+			pool.shutdownNow();
+		}
+		return winner != null;
+	}
+
+	/**
+	 * Runs a configuration as a single search
+	 *
+	 * @param entry - the configuration
+	 * @param xPos - starting x position
+	 * @param yPos - starting y position
+	 *
+	 */
+	private void runOnce(Entry entry, int xPos, int yPos) {
+		KnightEngine engine = engines.apply(entry.type);
+		boolean success;
+
+		if(entry.type == KnightBoard.Heuristic.WARNSDORFF) {
+			engine.setTieBreak(KnightBoard.TieBreak.RANDOM, entry.seed);
+		}
+		engine.setControl(control);
+		engine.setCancelFlag(stop);
+		success = engine.runKnightBoard(xPos, yPos);
+		entry.record(engine);
+		finish(entry, engine, success);
+	}
+
+	/**
+	 * Runs a configuration as a series of searches with a new random
+	 * tie-break order each time, the first with a budget of FIRST_RESTART
+	 * moves a square, each later one with twice the budget of the last
+	 *
+	 * @param entry - the configuration
+	 * @param xPos - starting x position
+	 * @param yPos - starting y position
+	 *
+	 */
+	private void runRestarts(Entry entry, int xPos, int yPos) {
+		Random seeds = new Random(seed);
+		long budget = FIRST_RESTART * squares;
+		KnightEngine engine;
+		SearchControl limit;
+		boolean success;
+
+		do {
+			engine = engines.apply(entry.type);
+			engine.setTieBreak(KnightBoard.TieBreak.RANDOM, seeds.nextLong());
+			limit = new SearchControl(budget, 0);
+			limit.start();
+			engine.setControl(limit);
+			engine.setCancelFlag(stop);
+			success = engine.runKnightBoard(xPos, yPos);
+			entry.record(engine);
+			entry.runs++;
+
+			// the shared limits are charged once the restart is over
+			if(control != null && control.charge(engine.getAttemptedMoves()) && !success) {
+				stop.set(true);
+			}
+			budget *= 2;
+		} while(!success && limit.isStopped() && !stop.get());
+
+		finish(entry, engine, success);
+	}
+
+	/**
+	 * Ends the race if the configuration found a tour, searched its whole
+	 * tree without one, or ran out of the shared limits
+	 *
+	 * @param entry - the configuration
+	 * @param engine - its last engine
+	 * @param success - true if the engine completed a tour
+	 *
+	 */
+	private void finish(Entry entry, KnightEngine engine, boolean success) {
+		if(success) {
+			synchronized(this) {
+				if(winner == null) {
+					entry.engine = engine;
+					winner = entry;
+				}
+			}
+		}
+		stop.set(true);
+	}
+
+	/**
+	 * Returns the engine holding the completed tour
+	 *
+	 * @return the winning engine, or null if no tour was found
+	 *
+	 */
+	public KnightEngine getWinner() {
+		return winner != null ? winner.engine : null;
+	}
+
+	/**
+	 * Returns the name of the configuration that completed the tour
+	 *
+	 * @return the winner's name, or null if no tour was found
+	 *
+	 */
+	public String getWinnerName() {
+		return winner != null ? winner.name : null;
+	}
+
+	/**
+	 * Returns the name of each configuration
+	 *
+	 * @return the names, in the order the configurations were set up
+	 *
+	 */
+	public String[] getNames() {
+		String[] retVal = new String[entries.size()];
+
+		for(int index = 0; index < retVal.length; index++) {
+			retVal[index] = entries.get(index).name;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the number of moves each configuration attempted
+	 *
+	 * @return attempted moves per configuration, in the order they were set up
+	 *
+	 */
+	public long[] getMoves() {
+		long[] retVal = new long[entries.size()];
+
+		for(int index = 0; index < retVal.length; index++) {
+			retVal[index] = entries.get(index).moves;
+		}
+		return retVal;
+	}
+
+	/**
+	 * get the number of searches the restarting configuration ran
+	 *
+	 * @return the number of restarts, counting the first search
+	 *
+	 */
+	public int getRestarts() {
+		return entries.get(1).runs;
+	}
+
+	/**
+	 * get attempted move count summed over every configuration
+	 *
+	 * @return the total number of attempted moves
+	 *
+	 */
+	public long getAttemptedMoves() {
+		long retVal = 0;
+
+		for(Entry entry : entries) {
+			retVal += entry.moves;
+		}
+		return retVal;
+	}
+
+	/**
+	 * get the Warnsdorff ties summed over every configuration
+	 *
+	 * @return the total number of ties
+	 *
+	 */
+	public long getTies() {
+		long retVal = 0;
+
+		for(Entry entry : entries) {
+			retVal += entry.ties;
+		}
+		return retVal;
+	}
+
+	/**
+	 * get the backtracks summed over every configuration
+	 *
+	 * @return the total number of backtracks
+	 *
+	 */
+	public long getBacktracks() {
+		long retVal = 0;
+
+		for(Entry entry : entries) {
+			retVal += entry.backtracks;
+		}
+		return retVal;
+	}
+
+	/**
+	 * get the pruned moves summed over every configuration
+	 *
+	 * @return the total number of pruned moves
+	 *
+	 */
+	public long getPrunedMoves() {
+		long retVal = 0;
+
+		for(Entry entry : entries) {
+			retVal += entry.pruned;
+		}
+		return retVal;
+	}
+
+	/**
+	 * One configuration of the race, and the moves, ties, backtracks and
+	 * pruned moves of every search it ran
+	 *
+	 */
+	private static class Entry {
+		private String name;
+		private KnightBoard.Heuristic type;
+		private boolean restarts;
+		private long seed;
+		private KnightEngine engine;
+		private int runs;
+		private long moves;
+		private long ties;
+		private long backtracks;
+		private long pruned;
+
+		private Entry(String name, KnightBoard.Heuristic type, boolean restarts, long seed) {
+			this.name = name;
+			this.type = type;
+			this.restarts = restarts;
+			this.seed = seed;
+		}
+
+		private void clear() {
+			engine = null;
+			runs = 0;
+			moves = 0;
+			ties = 0;
+			backtracks = 0;
+			pruned = 0;
+		}
+
+		private void record(KnightEngine engine) {
+			moves += engine.getAttemptedMoves();
+			ties += engine.getTies();
+			backtracks += engine.getBacktracks();
+			pruned += engine.getPrunedMoves();
+		}
+	}
+}
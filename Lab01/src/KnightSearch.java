@@ -0,0 +1,948 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Non-recursive search engine for the Knight's Tour. The current path is
+ * kept on an explicit stack of primitive arrays sized once for the whole
+ * board, so the tour length is limited by the heap rather than the thread
+ * stack, and no memory is allocated while the search runs. Each heuristic
+ * tries moves in the same order as the recursive search it replaces, so
+ * tours and attempted move counts are unchanged.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class KnightSearch implements KnightSearchEngine {
+	/* the cancel flag is polled once every POLL_MASK+1 attempted moves, and when the budget runs out */
+	private static final long POLL_MASK = 0xFFF;
+
+	/* Private variables for KnightSearch */
+	private KnightBoard.Heuristic type;	// the heuristic being used by the search
+	private MoveGraph graph;	// the board shape and the piece's moves
+	private int rows;	// the number of rows of the board
+	private int cols;	// the number of columns of the board
+	private int maxMoves;	// the number of squares a tour visits, all but the blocked ones
+	private int[] moveTable;	// 8 clockwise move targets per square, -1 if off the board
+	private int[] borderDist;	// distance of each square from the border
+	private int[] moveNums;	// the move number of each square, 0 if unvisited
+	private int[] path;	// the square visited at each move
+	private byte[] candDir;	// 8 candidate directions per move, in the order they will be tried
+	private byte[] candCount;	// the number of candidates at each move
+	private byte[] candNext;	// the index of the next candidate to try at each move
+	private int[] sortKey;	// scratch heuristic keys for the candidates being ordered
+	private long[] tieKey;	// scratch tie-break keys for candidates of equal degree
+	private KnightBoard.TieBreak tieBreak;	// how Warnsdorff orders candidates of equal degree
+	private Random random;	// the tie-break order of the random policy
+	private long ties;	// moves where more than one candidate had the lowest degree
+	private long backtracks;	// moves taken back because a square ran out of candidates
+	private byte[] degree;	// live count of unvisited neighbours of each square, Warnsdorff or pruning only
+	private boolean prune;	// abandon paths that strand an unvisited square
+	private int floodInterval;	// path lengths between connectivity checks, 0 for none
+	private int zeroSquares;	// unvisited squares with no unvisited neighbours
+	private int oneSquares;	// unvisited squares with a single unvisited neighbour
+	private int[] floodQueue;	// scratch queue of the connectivity check
+	private int[] floodMark;	// the check that last reached each square
+	private int floodStamp;	// the number of connectivity checks run
+	private long prunedMoves;	// moves abandoned by the pruning checks
+	private boolean closed;	// only accept tours that end a knight's move from the start
+	private boolean[] nearStart;	// the squares a closed tour may end on
+	private int openEnds;	// unvisited squares a closed tour may still end on
+	private int depth;	// the number of squares on the current path
+	private long attemptedMoves;	// the number of moves attempted to complete the tour
+	private AtomicBoolean cancel;	// raised by another thread to stop the search
+	private SearchControl control;	// the budget and deadline of the run, null for none
+	private SearchProgress progress;	// where the run reports its progress, null for nowhere
+	private long charged;	// attempted moves already charged to the control
+	private long nextPoll;	// the attempted moves at the next poll
+	private long published;	// attempted moves already reported to the progress
+	private int deepest;	// the longest path of the run
+	private long[] backtrackAt;	// backtracks since the last report, by the path length taken back from
+	private int lowBacktrack;	// the shortest path length with backtracks since the last report
+	private int highBacktrack;	// the longest path length with backtracks since the last report
+	private File checkpointFile;	// where the state of the run is saved, null for nowhere
+	private long checkpointInterval;	// nanoseconds between checkpoints
+	private long nextCheckpoint;	// System.nanoTime() at which the next checkpoint is due
+
+	/**
+	 * Sets up the search stack for a board described by a move graph
+	 *
+	 * @param type - the heuristic to search with
+	 * @param graph - the board shape and the piece's moves
+	 *
+	 */
+	public KnightSearch(KnightBoard.Heuristic type, MoveGraph graph) {
+		this.type = type;
+		this.graph = graph;
+		rows = graph.getRows();
+		cols = graph.getCols();
+		moveTable = graph.getMoves();
+		borderDist = graph.getBorderDist();
+		maxMoves = graph.getUsable();
+		moveNums = new int[graph.getSize()];
+		path = new int[maxMoves];
+		candDir = new byte[maxMoves*8];
+		candCount = new byte[maxMoves];
+		candNext = new byte[maxMoves];
+		sortKey = new int[8];
+		tieKey = new long[8];
+		tieBreak = KnightBoard.TieBreak.LOWEST;
+
+		if(type == KnightBoard.Heuristic.WARNSDORFF) {
+			initDegrees();
+		}
+	}
+
+	/**
+	 * Runs the tour from the given starting square
+	 *
+	 * @param xPos - starting x position
+	 * @param yPos - starting y position
+	 * @return false for failure, true for success
+	 *
+	 */
+	public boolean runKnightBoard(int xPos, int yPos) {
+		reset();
+		attemptedMoves++;
+		push(square(xPos, yPos));
+
+		if(graph.isConfined()) {
+			// the piece never leaves its own share of the squares
+			return false;
+		}
+		if(closed && maxMoves % 2 != 0 && graph.alternatesColour()) {
+			// every move changes colour, so an odd board can't close
+			return false;
+		}
+		if(!graph.isFeasible(path[0], closed)) {
+			// the usable squares are cut off, or their colours can't take turns
+			return false;
+		}
+		return finish(search(0, 0, null));
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightSearchEngine#expand(int, int, java.util.List)
+	 */
+	public boolean expand(int start, int splitDepth, List<int[]> prefixes) {
+		reset();
+		attemptedMoves++;
+		push(start);
+
+		if(graph.isConfined()) {
+			// the piece never leaves its own share of the squares
+			return false;
+		}
+		if(closed && maxMoves % 2 != 0 && graph.alternatesColour()) {
+			// every move changes colour, so an odd board can't close
+			return false;
+		}
+		if(!graph.isFeasible(path[0], closed)) {
+			// the usable squares are cut off, or their colours can't take turns
+			return false;
+		}
+		if(splitDepth <= 1) {
+			prefixes.add(new int[] {start});
+			return false;
+		}
+		return finish(search(0, splitDepth, prefixes));
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightSearchEngine#runFrom(int[])
+	 */
+	public boolean runFrom(int[] prefix) {
+		reset();
+		for(int index = 0; index < prefix.length; index++) {
+			push(prefix[index]);
+		}
+
+		if(depth == maxMoves) {
+			return finish(true);
+		}
+		return finish(search(depth-1, 0, null));
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightSearchEngine#resume(SearchCheckpoint)
+	 */
+	public boolean resume(SearchCheckpoint state) {
+		int[] squares = state.getPath();
+		byte[] next = state.getNext();
+		long[] counters = state.getCounters();
+
+		if(!state.fits(graph, type, closed, prune, floodInterval, tieBreak)) {
+			throw new IllegalArgumentException("the checkpoint is for another board or search");
+		}
+
+		// replaying the path rebuilds the candidates and degrees of every square
+		reset();
+		for(int level = 0; level < squares.length; level++) {
+			push(squares[level]);
+			candNext[level] = next[level];
+		}
+		attemptedMoves = counters[0];
+		ties = counters[1];
+		backtracks = counters[2];
+		prunedMoves = counters[3];
+		charged = attemptedMoves;
+		published = attemptedMoves;
+
+		if(depth == maxMoves) {
+			return finish(true);
+		}
+		return finish(search(0, 0, null));
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightSearchEngine#setCheckpoint(java.io.File, long)
+	 */
+	public void setCheckpoint(File file, long intervalMillis) {
+		checkpointFile = file;
+		checkpointInterval = intervalMillis * 1000000L;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setCancelFlag(java.util.concurrent.atomic.AtomicBoolean)
+	 */
+	public void setCancelFlag(AtomicBoolean cancel) {
+		this.cancel = cancel;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setControl(SearchControl)
+	 */
+	public void setControl(SearchControl control) {
+		this.control = control;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setProgress(SearchProgress)
+	 */
+	public void setProgress(SearchProgress progress) {
+		this.progress = progress;
+		backtrackAt = progress != null ? new long[maxMoves+1] : null;
+		lowBacktrack = maxMoves+1;
+		highBacktrack = 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setTieBreak(KnightBoard.TieBreak, long)
+	 */
+	public void setTieBreak(KnightBoard.TieBreak tieBreak, long seed) {
+		this.tieBreak = tieBreak;
+		random = new Random(seed);
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setPruning(boolean, int)
+	 */
+	public void setPruning(boolean prune, int floodInterval) {
+		reset();
+		this.prune = prune;
+		this.floodInterval = floodInterval;
+		if(!prune) {
+			return;
+		}
+
+		if(degree == null) {
+			initDegrees();
+		}
+		floodQueue = new int[maxMoves];
+		floodMark = new int[graph.getSize()];
+
+		// every usable square is unvisited
+		zeroSquares = 0;
+		oneSquares = 0;
+		for(int square = 0; square < graph.getSize(); square++) {
+			if(graph.isBlocked(square)) {
+				continue;
+			} else if(degree[square] == 0) {
+				zeroSquares++;
+			} else if(degree[square] == 1) {
+				oneSquares++;
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setMemo(long, DeadStateTable.Replacement)
+	 */
+	public void setMemo(long memoryBytes, DeadStateTable.Replacement replacement) {
+		// a visited set larger than a long has no cheap exact key, so no table is kept
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#setClosed(boolean)
+	 */
+	public void setClosed(boolean closed) {
+		reset();
+		this.closed = closed;
+		nearStart = closed ? new boolean[graph.getSize()] : null;
+	}
+
+	/**
+	 * Clears any path left by a previous run and resets the counters
+	 *
+	 */
+	private void reset() {
+		while(depth > 0) {
+			pop();
+		}
+		attemptedMoves = 0;
+		ties = 0;
+		backtracks = 0;
+		prunedMoves = 0;
+		charged = 0;
+		published = 0;
+		deepest = 0;
+		nextCheckpoint = System.nanoTime() + checkpointInterval;
+	}
+
+	/**
+	 * Runs the search loop from the current path
+	 *
+	 * @param floor - the level below which the search never backtracks
+	 * @param splitDepth - path length at which paths are recorded instead of searched, 0 for none
+	 * @param prefixes - the list recorded paths are added to
+	 * @return false for failure, true for success
+	 *
+	 */
+	private boolean search(int floor, int splitDepth, List<int[]> prefixes) {
+		// with nothing to poll the loop never has to stop
+		nextPoll = watched() ? pollAt() : Long.MAX_VALUE;
+		while(depth < maxMoves) {
+			int top = depth-1;
+
+			if(candNext[top] < candCount[top]) {
+				// try the next candidate from the current square
+				int dir = candDir[top*8 + candNext[top]++];
+				attemptedMoves++;
+				push(moveTable[path[top]*8 + dir]);
+
+				if(closed && !canClose()) {
+					// this path can no longer get back to the start
+					pop();
+				} else if(prune && !canFinish()) {
+					// some unvisited square can no longer be reached
+					prunedMoves++;
+					pop();
+				} else if(depth == splitDepth && depth < maxMoves) {
+					// record the path and leave its subtree to a worker
+					int[] prefix = new int[depth];
+					System.arraycopy(path, 0, prefix, 0, depth);
+					prefixes.add(prefix);
+					pop();
+				} else if(attemptedMoves == nextPoll && depth < maxMoves && poll()) {
+					return false;
+				}
+			} else {
+				// out of candidates, backtrack
+				if(top == floor) {
+					return false;
+				}
+				backtracks++;
+				if(progress != null) {
+					noteBacktrack();
+				}
+				pop();
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Records a backtrack from the current path length for the next
+	 * progress report
+	 *
+	 */
+	private void noteBacktrack() {
+		backtrackAt[depth]++;
+		if(depth < lowBacktrack) {
+			lowBacktrack = depth;
+		}
+		if(depth > highBacktrack) {
+			highBacktrack = depth;
+		}
+	}
+
+	/**
+	 * Checks whether anything has to be done when the search polls.
+	 * Without anything the poll is never called and costs nothing.
+	 *
+	 * @return true if there is a cancel flag, control, progress or checkpoint
+	 *
+	 */
+	private boolean watched() {
+		return cancel != null || control != null || progress != null || checkpointFile != null;
+	}
+
+	/**
+	 * Reports progress, checks the cancel flag and charges the moves since
+	 * the last check to the control. Called every POLL_MASK+1 attempted
+	 * moves and when the budget runs out, see pollAt, so the search loop
+	 * itself only counts. A checkpoint is saved when one is due, and
+	 * always when the search is stopped, so it can be carried on later.
+	 *
+	 * @return true if the search should stop
+	 *
+	 */
+	private boolean poll() {
+		boolean retVal;
+
+		if(progress != null) {
+			report();
+		}
+		retVal = (cancel != null && cancel.get()) || (control != null && charge());
+
+		if(checkpointFile != null && (retVal || System.nanoTime() - nextCheckpoint >= 0)) {
+			saveCheckpoint();
+		}
+		nextPoll = pollAt();
+		return retVal;
+	}
+
+	/**
+	 * Works out the attempted moves at the next poll: the next multiple of
+	 * POLL_MASK+1, or sooner if the budget runs out first, so that a run
+	 * stops at exactly its budget
+	 *
+	 * @return the attempted moves at which to poll, always after the current count
+	 *
+	 */
+	private long pollAt() {
+		long retVal = (attemptedMoves | POLL_MASK) + 1;
+		long left = control != null ? control.getMovesLeft() : Long.MAX_VALUE;
+
+		// moves not yet charged already count against what is left
+		if(left < retVal - charged) {
+			retVal = Math.max(charged + left, attemptedMoves + 1);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Writes the current path, the next candidate at each of its squares
+	 * and the counters to the checkpoint file
+	 *
+	 */
+	private void saveCheckpoint() {
+		int[] squares = new int[depth];
+		byte[] next = new byte[depth];
+		long[] counters = {attemptedMoves, ties, backtracks, prunedMoves};
+
+		System.arraycopy(path, 0, squares, 0, depth);
+		System.arraycopy(candNext, 0, next, 0, depth);
+		try {
+			new SearchCheckpoint(graph, type, closed, prune, floodInterval, tieBreak, squares, next, counters)
+					.write(checkpointFile);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		nextCheckpoint = System.nanoTime() + checkpointInterval;
+	}
+
+	/**
+	 * Reports whatever the last checks didn't cover once the search has
+	 * ended, and counts the last moves toward the budget. The search is
+	 * over, so running past the budget here doesn't stop it.
+	 *
+	 * @param found - the result of the search
+	 * @return found
+	 *
+	 */
+	private boolean finish(boolean found) {
+		if(progress != null) {
+			report();
+		}
+		if(control != null) {
+			control.spend(attemptedMoves - charged);
+			charged = attemptedMoves;
+		}
+		return found;
+	}
+
+	/**
+	 * Hands the moves and backtracks since the last report to the progress.
+	 * Every path that isn't a tour ends in a backtrack, so the longest path
+	 * is the longest length with backtracks, or the current path.
+	 *
+	 */
+	private void report() {
+		deepest = Math.max(deepest, Math.max(depth, highBacktrack));
+		progress.report(attemptedMoves - published, depth, deepest);
+		published = attemptedMoves;
+
+		for(int level = lowBacktrack; level <= highBacktrack; level++) {
+			if(backtrackAt[level] != 0) {
+				progress.addBacktracks(level, backtrackAt[level]);
+				backtrackAt[level] = 0;
+			}
+		}
+		lowBacktrack = maxMoves+1;
+		highBacktrack = 0;
+	}
+
+	/**
+	 * Charges the moves since the last charge to the control
+	 *
+	 * @return true if the control has stopped the run
+	 *
+	 */
+	private boolean charge() {
+		boolean retVal = control.charge(attemptedMoves - charged);
+
+		charged = attemptedMoves;
+		return retVal;
+	}
+
+	/**
+	 * Checks whether the current path can still end next to the start. The
+	 * last square has to be one of the start's neighbours, and before that
+	 * at least one of them has to be left unvisited for it.
+	 *
+	 * @return false if the path can't be finished as a closed tour
+	 *
+	 */
+	private boolean canClose() {
+		if(depth == maxMoves) {
+			return nearStart[path[depth-1]];
+		}
+		return openEnds > 0;
+	}
+
+	/**
+	 * Checks whether the unvisited squares can still all be reached. A
+	 * square with no unvisited neighbours is stranded unless it is the only
+	 * square left. A square with one unvisited neighbour can only be the
+	 * end of the tour, unless the knight can step onto it straight away, so
+	 * there can be at most one of them. Every floodInterval squares the
+	 * unvisited squares are also checked for being connected to the knight.
+	 *
+	 * @return false if the path can't be finished as a tour
+	 *
+	 */
+	private boolean canFinish() {
+		int remaining = maxMoves - depth;
+		int head = path[depth-1];
+		int ends = oneSquares;
+
+		if(remaining <= 1) {
+			return true;
+		}
+		if(zeroSquares > 0) {
+			return false;
+		}
+
+		// the knight can pass through a neighbour with one way out
+		for(int dir = 0; dir < 8; dir++) {
+			int target = moveTable[head*8 + dir];
+			if(target >= 0 && moveNums[target] == 0 && degree[target] == 1) {
+				ends--;
+			}
+		}
+		if(ends > 1) {
+			return false;
+		}
+
+		if(floodInterval > 0 && depth % floodInterval == 0) {
+			return flood(head) == remaining;
+		}
+		return true;
+	}
+
+	/**
+	 * Counts the unvisited squares reachable from a square through other
+	 * unvisited squares
+	 *
+	 * @param head - the square to start from
+	 * @return the number of unvisited squares reached
+	 *
+	 */
+	private int flood(int head) {
+		int first = 0;
+		int last = 0;
+
+		floodStamp++;
+		floodQueue[last++] = head;
+		while(first < last) {
+			int square = floodQueue[first++];
+			for(int dir = 0; dir < 8; dir++) {
+				int target = moveTable[square*8 + dir];
+				if(target >= 0 && moveNums[target] == 0 && floodMark[target] != floodStamp) {
+					floodMark[target] = floodStamp;
+					floodQueue[last++] = target;
+				}
+			}
+		}
+		return last - 1;
+	}
+
+	/**
+	 * get attempted move count for use outside the KnightSearch object
+	 *
+	 * @return attemptedMoves - the number of moves it took to get a solution.
+	 *
+	 */
+	public long getAttemptedMoves() {
+		return attemptedMoves;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getPrunedMoves()
+	 */
+	public long getPrunedMoves() {
+		return prunedMoves;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getMemoHits()
+	 */
+	public long getMemoHits() {
+		return 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getMemoMisses()
+	 */
+	public long getMemoMisses() {
+		return 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getMemoEvictions()
+	 */
+	public long getMemoEvictions() {
+		return 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getTies()
+	 */
+	public long getTies() {
+		return ties;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getBacktracks()
+	 */
+	public long getBacktracks() {
+		return backtracks;
+	}
+
+	/**
+	 * Retrieves the move number at which the tour reached a square
+	 *
+	 * @param xPos - the x coordinate of the square
+	 * @param yPos - the y coordinate of the square
+	 * @return the move number, or 0 if the square is not on the current path
+	 *
+	 */
+	public int getMoveNum(int xPos, int yPos) {
+		return moveNums[square(xPos, yPos)];
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#getDirections()
+	 */
+	public byte[] getDirections() {
+		byte[] retVal = new byte[Math.max(depth-1, 0)];
+
+		for(int index = 0; index < retVal.length; index++) {
+			int dir = 0;
+			while(moveTable[path[index]*8 + dir] != path[index+1]) {
+				dir++;
+			}
+			retVal[index] = (byte) dir;
+		}
+		return retVal;
+	}
+
+	/* (non-Javadoc)
+	 * @see KnightEngine#square(int, int)
+	 */
+	public int square(int xPos, int yPos) {
+		return xPos*cols + yPos;
+	}
+
+	/**
+	 * Moves the knight onto a square and collects the directions of its
+	 * next moves, ordered by the selected heuristic. Attempted moves are
+	 * counted by the caller, so replayed paths are not counted twice.
+	 *
+	 * @param square - the square to move to
+	 *
+	 */
+	private void push(int square) {
+		int level = depth;
+		int base = level*8;
+		int count = 0;
+
+		path[level] = square;
+		depth++;
+		moveNums[square] = depth;
+		candNext[level] = 0;
+
+		// reserve the start's neighbours as the squares the tour can end on
+		if(closed) {
+			if(level == 0) {
+				markStart(square, true);
+			} else if(nearStart[square]) {
+				openEnds--;
+			}
+		}
+
+		// the square leaves the unvisited squares
+		if(prune) {
+			countDegree(square, -1);
+		}
+
+		// the neighbours of this square each lose an onward move
+		if(degree != null) {
+			for(int dir = 0; dir < 8; dir++) {
+				int target = moveTable[square*8 + dir];
+				if(target >= 0) {
+					if(prune && moveNums[target] == 0) {
+						countDegree(target, -1);
+						degree[target]--;
+						countDegree(target, 1);
+					} else {
+						degree[target]--;
+					}
+				}
+			}
+		}
+
+		// the last square needs no candidates
+		if(depth == maxMoves) {
+			candCount[level] = 0;
+			return;
+		}
+
+		// collect unvisited targets in clockwise order, with their keys
+		for(int dir = 0; dir < 8; dir++) {
+			int target = moveTable[square*8 + dir];
+			if(target >= 0 && moveNums[target] == 0) {
+				switch (type) {
+				case BORDERS:
+					sortKey[count] = borderDist[target];
+					break;
+				case WARNSDORFF:
+					sortKey[count] = degree[target];
+					break;
+				default:
+					break;
+				}
+				candDir[base + count++] = (byte) dir;
+			}
+		}
+		candCount[level] = (byte) count;
+
+		if(type != KnightBoard.Heuristic.BORDERS && type != KnightBoard.Heuristic.WARNSDORFF) {
+			return;
+		}
+
+		// stable insertion sort keeps the lowest clockwise index first among ties
+		for(int index = 1; index < count; index++) {
+			byte dir = candDir[base+index];
+			int key = sortKey[index];
+			int slot = index;
+			while(slot > 0 && sortKey[slot-1] > key) {
+				candDir[base+slot] = candDir[base+slot-1];
+				sortKey[slot] = sortKey[slot-1];
+				slot--;
+			}
+			candDir[base+slot] = dir;
+			sortKey[slot] = key;
+		}
+
+		if(type == KnightBoard.Heuristic.WARNSDORFF && count > 1) {
+			breakTies(square, base, count);
+		}
+	}
+
+	/**
+	 * Counts a tie for the lowest degree, then reorders each run of
+	 * candidates with equal degree by the selected tie-break policy. The
+	 * lowest index policy leaves them in clockwise order.
+	 *
+	 * @param square - the square the candidates are moves from
+	 * @param base - the index of the first candidate in candDir
+	 * @param count - the number of candidates, sorted by degree
+	 *
+	 */
+	private void breakTies(int square, int base, int count) {
+		int start = 0;
+
+		if(sortKey[0] == sortKey[1]) {
+			ties++;
+		}
+		if(tieBreak == KnightBoard.TieBreak.LOWEST) {
+			return;
+		}
+
+		while(start < count) {
+			int end = start+1;
+			while(end < count && sortKey[end] == sortKey[start]) {
+				end++;
+			}
+
+			if(end - start > 1) {
+				// stable insertion sort of the run on its tie-break keys
+				for(int index = start; index < end; index++) {
+					tieKey[index] = tieKey(moveTable[square*8 + candDir[base+index]]);
+				}
+				for(int index = start+1; index < end; index++) {
+					byte dir = candDir[base+index];
+					long key = tieKey[index];
+					int slot = index;
+					while(slot > start && tieKey[slot-1] > key) {
+						candDir[base+slot] = candDir[base+slot-1];
+						tieKey[slot] = tieKey[slot-1];
+						slot--;
+					}
+					candDir[base+slot] = dir;
+					tieKey[slot] = key;
+				}
+			}
+			start = end;
+		}
+	}
+
+	/**
+	 * Computes the tie-break key of a candidate, lower keys are tried first
+	 *
+	 * @param target - the candidate square
+	 * @return the key under the selected tie-break policy
+	 *
+	 */
+	private long tieKey(int target) {
+		long retVal = 0;
+		long xDist;
+		long yDist;
+
+		switch (tieBreak) {
+		case POHL:
+			// a square whose neighbours are nearly cut off should be reached now
+			for(int dir = 0; dir < 8; dir++) {
+				int next = moveTable[target*8 + dir];
+				if(next >= 0 && moveNums[next] == 0) {
+					retVal += degree[next];
+				}
+			}
+			break;
+		case ROTH:
+			// squared distance from the centre, in half squares, negated
+			xDist = 2*(target / cols) - (rows-1);
+			yDist = 2*(target % cols) - (cols-1);
+			retVal = -(xDist*xDist + yDist*yDist);
+			break;
+		case RANDOM:
+			retVal = random.nextInt();
+			break;
+		default:
+			break;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Takes the knight off the last square of the path, giving its
+	 * neighbours back the onward move it used
+	 *
+	 */
+	private void pop() {
+		int square = path[depth-1];
+
+		moveNums[square] = 0;
+		depth--;
+
+		if(closed) {
+			if(depth == 0) {
+				markStart(square, false);
+			} else if(nearStart[square]) {
+				openEnds++;
+			}
+		}
+
+		if(degree != null) {
+			for(int dir = 0; dir < 8; dir++) {
+				int target = moveTable[square*8 + dir];
+				if(target >= 0) {
+					if(prune && moveNums[target] == 0) {
+						countDegree(target, -1);
+						degree[target]++;
+						countDegree(target, 1);
+					} else {
+						degree[target]++;
+					}
+				}
+			}
+		}
+
+		// and the square rejoins the unvisited squares
+		if(prune) {
+			countDegree(square, 1);
+		}
+	}
+
+	/**
+	 * Adds or removes an unvisited square from the counts of squares with
+	 * no or one unvisited neighbours, according to its current degree
+	 *
+	 * @param square - the unvisited square
+	 * @param change - 1 to add the square, -1 to remove it
+	 *
+	 */
+	private void countDegree(int square, int change) {
+		if(degree[square] == 0) {
+			zeroSquares += change;
+		} else if(degree[square] == 1) {
+			oneSquares += change;
+		}
+	}
+
+	/**
+	 * Marks or clears the neighbours of the starting square as the squares
+	 * a closed tour may end on
+	 *
+	 * @param start - the starting square
+	 * @param mark - true when the start is placed, false when it is removed
+	 *
+	 */
+	private void markStart(int start, boolean mark) {
+		openEnds = 0;
+		for(int dir = 0; dir < 8; dir++) {
+			int target = moveTable[start*8 + dir];
+			if(target >= 0) {
+				nearStart[target] = mark;
+				openEnds++;
+			}
+		}
+	}
+
+	/**
+	 * Sets the degree of every square to its number of on board moves.
+	 * From then on push and pop keep the degrees equal to the number of
+	 * unvisited neighbours, so Warnsdorff's key for a candidate is a single
+	 * lookup rather than eight occupancy checks.
+	 *
+	 */
+	private void initDegrees() {
+		degree = new byte[graph.getSize()];
+
+		for(int square = 0; square < degree.length; square++) {
+			int validMoves = 0;
+			for(int dir = 0; dir < 8; dir++) {
+				if(moveTable[square*8 + dir] >= 0) {
+					validMoves++;
+				}
+			}
+			degree[square] = (byte) validMoves;
+		}
+	}
+}
@@ -0,0 +1,63 @@
+import java.io.File;
+import java.util.List;
+
+/**
+ * The operations of the engines that find a tour by searching, on top of
+ * those of every engine: the search tree can be split into subtrees that
+ * are searched on separate engines, and a search can be saved part way
+ * through and carried on later. KnightBitboard and KnightSearch search,
+ * KnightConstruct builds its tour without a tree, so it has neither.
+ *
+ * @author Jason Egbert
+ *
+ */
+interface KnightSearchEngine extends KnightEngine {
+	/**
+	 * Searches the tree in heuristic order down to a fixed number of
+	 * squares, recording every path of that length instead of searching
+	 * below it. The paths are added in the order the full search would
+	 * reach them.
+	 *
+	 * @param start - the index of the starting square
+	 * @param splitDepth - the number of squares in each recorded path
+	 * @param prefixes - the list the recorded paths are added to
+	 * @return true if a complete tour was found before reaching splitDepth
+	 *
+	 */
+	boolean expand(int start, int splitDepth, List<int[]> prefixes);
+
+	/**
+	 * Replays a path recorded by expand without counting it, then searches
+	 * only the subtree below its last square
+	 *
+	 * @param prefix - the squares of the path, starting square first
+	 * @return false for failure, true for success
+	 *
+	 */
+	boolean runFrom(int[] prefix);
+
+	/**
+	 * Carries on a run from a checkpoint it saved, to the same tour and
+	 * the same counts as if it had never stopped. The engine has to have
+	 * the settings the checkpoint was taken with.
+	 *
+	 * @param state - the checkpoint
+	 * @return false for failure, true for success
+	 * @throws IllegalArgumentException if the checkpoint is for another board or search
+	 *
+	 */
+	boolean resume(SearchCheckpoint state);
+
+	/**
+	 * Saves the state of each run to a file at a fixed interval, and
+	 * whenever the run is stopped by its control or cancel flag. The file
+	 * is only written when the cancel flag is polled. A run with the
+	 * random tie-break can't be carried on exactly, as the state of its
+	 * random order isn't saved.
+	 *
+	 * @param file - the checkpoint file, or null for no checkpoints
+	 * @param intervalMillis - the milliseconds between checkpoints
+	 *
+	 */
+	void setCheckpoint(File file, long intervalMillis);
+}
@@ -0,0 +1,270 @@
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Driver for experiments over many boards at once. Every heuristic is run
+ * from a set of starting squares on every board size in a range, each run
+ * with its own move budget and time limit, on a pool of threads, and one
+ * line of CSV is written per run with its attempted moves, wall time,
+ * result and the bytes its thread allocated. The lines come out in grid order
+ * whatever order the runs finish in.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class KnightSweep {
+	/* the heading of the CSV */
+	private static final String HEADER = "heuristic,rows,cols,x,y,status,moves,millis,allocated_bytes";
+
+	/* how the starting squares of each board are chosen */
+	enum Starts {
+		CORNER,	// only the square 0,0
+		CLASSES,	// the lowest square of each symmetry class
+		ALL	// every square
+	}
+
+	/**
+	 * Parses the sweep's arguments and writes the CSV
+	 *
+	 * @param args - min_size max_size, then options
+	 *
+	 */
+	public static void main(String args[]) {
+		int minSize;
+		int maxSize;
+		List<KnightBoard.Heuristic> heuristics;
+		Starts starts;
+		long budget;
+		double timeout;
+		int threads;
+		String outFile;
+
+		if(args.length < 2) {
+			printUsage();
+			return;
+		}
+
+		heuristics = new ArrayList<KnightBoard.Heuristic>();
+		starts = Starts.CLASSES;
+		budget = 10000000;
+		timeout = 0;
+		threads = Runtime.getRuntime().availableProcessors();
+		outFile = null;
+		try {
+			minSize = Integer.parseInt(args[0]);
+			maxSize = Integer.parseInt(args[1]);
+
+			// options follow the sizes, each with a value
+			for(int index = 2; index < args.length; index++) {
+				switch (args[index]) {
+				case "-heuristics":
+					for(String level : args[++index].split(",")) {
+						heuristics.add(KnightBoard.Heuristic.values()[Integer.parseInt(level)]);
+					}
+					break;
+				case "-starts":
+					starts = Starts.valueOf(args[++index].toUpperCase());
+					break;
+				case "-budget":
+					budget = Long.parseLong(args[++index]);
+					break;
+				case "-timeout":
+					timeout = Double.parseDouble(args[++index]);
+					break;
+				case "-threads":
+					threads = Integer.parseInt(args[++index]);
+					break;
+				case "-out":
+					outFile = args[++index];
+					break;
+				default:
+					printUsage();
+					return;
+				}
+			}
+		} catch(IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			// you put in something that isn't a number or a start set,
+			// or left off an option's value
+			printUsage();
+			return;
+		}
+
+		// every heuristic unless they are given
+		if(heuristics.isEmpty()) {
+			for(KnightBoard.Heuristic type : KnightBoard.Heuristic.values()) {
+				if(type != KnightBoard.Heuristic.ERROR) {
+					heuristics.add(type);
+				}
+			}
+		}
+
+		if(minSize < 3 || maxSize < minSize || heuristics.contains(KnightBoard.Heuristic.ERROR) || budget < 0
+				|| !(timeout >= 0) || threads < 1) {
+			printUsage();
+			return;
+		}
+
+		try(Writer out = new BufferedWriter(outFile != null
+				? new OutputStreamWriter(new FileOutputStream(outFile)) : new OutputStreamWriter(System.out))) {
+			sweep(out, minSize, maxSize, heuristics, starts, budget, (long) (timeout * 1000), threads);
+		} catch(IOException e) {
+			System.err.println("Output failed: " + e.getMessage());
+		} catch(InterruptedException e) {
+			System.err.println("Sweep interrupted!");
+		}
+	}
+
+	/**
+	 * Runs every cell of the grid on a pool of threads and writes a line
+	 * for each, in grid order, as soon as it and every cell before it are
+	 * done
+	 *
+	 * @param out - where the CSV is written
+	 * @param minSize - the smallest board size
+	 * @param maxSize - the largest board size
+	 * @param heuristics - the heuristics to run
+	 * @param starts - which starting squares of each board to run
+	 * @param budget - the most attempted moves of each run, 0 for no limit
+	 * @param timeLimitMillis - the most milliseconds of each run, 0 for no limit
+	 * @param threads - the number of runs at once
+	 * @throws IOException if the CSV can't be written
+	 * @throws InterruptedException if interrupted while waiting for a run
+	 *
+	 */
+	public static void sweep(Writer out, int minSize, int maxSize, List<KnightBoard.Heuristic> heuristics,
+			Starts starts, long budget, long timeLimitMillis, int threads) throws IOException, InterruptedException {
+		List<Future<String>> results = new ArrayList<Future<String>>();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+		out.write(HEADER + "\n");
+		try {
+			for(int size = minSize; size <= maxSize; size++) {
+				for(int square : startSquares(size, starts)) {
+					for(KnightBoard.Heuristic type : heuristics) {
+						int boardSize = size;
+						results.add(pool.submit(() -> runCell(type, boardSize, square / boardSize, square % boardSize,
+								budget, timeLimitMillis)));
+					}
+				}
+			}
+
+			for(Future<String> result : results) {
+				out.write(result.get());
+				out.flush();
+			}
+		} catch(ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Lists the starting squares of a board
+	 *
+	 * @param boardSize - the size of one dimension of the board
+	 * @param starts - which squares to list
+	 * @return the squares, x*boardSize+y, lowest first
+	 *
+	 */
+	private static List<Integer> startSquares(int boardSize, Starts starts) {
+		List<Integer> retVal = new ArrayList<Integer>();
+		MoveGraph graph = MoveGraph.knight(boardSize);
+		boolean[] covered = new boolean[boardSize*boardSize];
+
+		for(int square = 0; square < covered.length; square++) {
+			if(starts == Starts.CORNER && square > 0) {
+				break;
+			}
+			if(covered[square]) {
+				continue;
+			}
+
+			// a square is the lowest of its class if no earlier square maps onto it
+			retVal.add(square);
+			if(starts == Starts.CLASSES) {
+				for(int sym = 0; sym < MoveGraph.SYMMETRIES; sym++) {
+					covered[graph.transform(sym, square)] = true;
+				}
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Runs one heuristic from one starting square with its own limits
+	 *
+	 * @param type - the heuristic
+	 * @param boardSize - the size of one dimension of the board
+	 * @param xPos - starting x position
+	 * @param yPos - starting y position
+	 * @param budget - the most attempted moves, 0 for no limit
+	 * @param timeLimitMillis - the most milliseconds, 0 for no limit
+	 * @return the line of CSV for the run
+	 *
+	 */
+	private static String runCell(KnightBoard.Heuristic type, int boardSize, int xPos, int yPos, long budget,
+			long timeLimitMillis) {
+		long startBytes = allocatedBytes();
+		long startTime = System.nanoTime();
+		KnightBoard board = new KnightBoard(type.ordinal(), boardSize);
+		long millis;
+		long allocated;
+
+		if(budget > 0 || timeLimitMillis > 0) {
+			board.setControl(new SearchControl(budget, timeLimitMillis));
+		}
+		board.runKnightBoard(xPos, yPos);
+		millis = (System.nanoTime() - startTime) / 1000000;
+		allocated = startBytes >= 0 ? allocatedBytes() - startBytes : -1;
+
+		return type + "," + boardSize + "," + boardSize + "," + xPos + "," + yPos + "," + board.getStatus() + ","
+				+ board.getAttemptedMoves() + "," + millis + "," + allocated + "\n";
+	}
+
+	/**
+	 * Reads the bytes allocated so far by the calling thread. This counts
+	 * garbage as well as what a run keeps, and none of what the JVM or
+	 * other threads allocate for it, so it is the allocation of a run and
+	 * not its footprint.
+	 *
+	 * @return the bytes allocated by this thread, or -1 if the JVM can't tell
+	 *
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+		if(threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * Instructions for correct usage of the KnightSweep program.
+	 *
+	 */
+	private static void printUsage() {
+		System.out.println("usage: $ java KnightSweep min_size max_size [options]\n"
+				+ "	min_size:        the smallest board size, integer >= 3\n"
+				+ "	max_size:        the largest board size, integer >= min_size\n"
+				+ "options:\n"
+				+ "	-heuristics l:   the heuristic levels to run, e.g. 0,2 (default all of 0 to 3)\n"
+				+ "	-starts s:       corner, classes (default, one square per symmetry class) or all\n"
+				+ "	-budget n:       give up each run once n moves have been attempted (default 10000000,\n"
+				+ "	                 0 for no limit)\n"
+				+ "	-timeout s:      give up each run after s seconds\n"
+				+ "	-threads t:      run t boards at once (default one per processor)\n"
+				+ "	-out f:          write the CSV to file f instead of the console\n");
+	}
+}
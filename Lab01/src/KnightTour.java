@@ -1,4 +1,13 @@
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
 /**
  * Driver for The Knight's Tour
  * 
@@ -16,62 +25,637 @@ public class KnightTour {
 	public static void main(String args[]) {
 		int hType;
 		int boardSize;
+		int cols;
+		int longLeg;
+		int shortLeg;
 		int xPos;
 		int yPos;
+		int threads;
+		int splitDepth;
+		boolean closed;
+		KnightBoard.TieBreak tieBreak;
+		long seed;
+		boolean prune;
+		int floodInterval;
+		long memoMegabytes;
+		DeadStateTable.Replacement replacement;
+		boolean count;
+		int listTours;
+		String tourFile;
+		long budget;
+		double timeout;
+		double progressInterval;
+		String checkpointFile;
+		double checkpointInterval;
+		String resumeFile;
+		boolean large;
+		boolean race;
+		String maskFile;
+		MoveGraph graph;
+		SearchControl control;
+		SearchProgress progress;
+		Thread monitor;
 		boolean success;
 		String retString;
 
-		// too few or too many command line arguments
-		if(args.length < 4 || args.length > 4) {
+		// every starting square at once
+		if(args.length >= 3 && args[2].equals("-all")) {
+			runBatch(args);
+			return;
+		}
+
+		// too few command line arguments
+		if(args.length < 4) {
 			printUsage();
 			return;
 		}
 		
 		// attempt to parse the command line args into a coherent set of 
 		// variables to build and run a KnightBoard
+		threads = 1;
+		splitDepth = 3;
+		closed = false;
+		tieBreak = null;
+		seed = 0;
+		prune = false;
+		floodInterval = 0;
+		cols = 0;
+		longLeg = 2;
+		shortLeg = 1;
+		memoMegabytes = 0;
+		replacement = DeadStateTable.Replacement.DEPTH;
+		count = false;
+		listTours = 0;
+		tourFile = null;
+		budget = 0;
+		timeout = 0;
+		progressInterval = 0;
+		checkpointFile = null;
+		checkpointInterval = 60;
+		resumeFile = null;
+		large = false;
+		race = false;
+		maskFile = null;
 		try {
 			hType = Integer.parseInt(args[0]);
 			boardSize = Integer.parseInt(args[1]);
 			xPos = Integer.parseInt(args[2]);
 			yPos = Integer.parseInt(args[3]);
-		} catch(NumberFormatException e) {
-			// you put in something that isn't a number
+			
+			// options follow the required arguments, some with a value
+			for(int index = 4; index < args.length; index++) {
+				switch (args[index]) {
+				case "-threads":
+					threads = Integer.parseInt(args[++index]);
+					break;
+				case "-split":
+					splitDepth = Integer.parseInt(args[++index]);
+					break;
+				case "-closed":
+					closed = true;
+					break;
+				case "-tie":
+					tieBreak = KnightBoard.TieBreak.valueOf(args[++index].toUpperCase());
+					break;
+				case "-seed":
+					seed = Long.parseLong(args[++index]);
+					break;
+				case "-prune":
+					prune = true;
+					break;
+				case "-flood":
+					prune = true;
+					floodInterval = Integer.parseInt(args[++index]);
+					break;
+				case "-cols":
+					cols = Integer.parseInt(args[++index]);
+					break;
+				case "-leaper":
+					// the legs of the leap as a,b in either order
+					String[] legs = args[++index].split(",");
+					longLeg = Math.max(Integer.parseInt(legs[0]), Integer.parseInt(legs[1]));
+					shortLeg = Math.min(Integer.parseInt(legs[0]), Integer.parseInt(legs[1]));
+					break;
+				case "-memo":
+					memoMegabytes = Long.parseLong(args[++index]);
+					break;
+				case "-replace":
+					replacement = DeadStateTable.Replacement.valueOf(args[++index].toUpperCase());
+					break;
+				case "-count":
+					count = true;
+					break;
+				case "-list":
+					listTours = Integer.parseInt(args[++index]);
+					break;
+				case "-write":
+					tourFile = args[++index];
+					break;
+				case "-budget":
+					budget = Long.parseLong(args[++index]);
+					break;
+				case "-timeout":
+					timeout = Double.parseDouble(args[++index]);
+					break;
+				case "-progress":
+					progressInterval = Double.parseDouble(args[++index]);
+					break;
+				case "-checkpoint":
+					checkpointFile = args[++index];
+					break;
+				case "-every":
+					checkpointInterval = Double.parseDouble(args[++index]);
+					break;
+				case "-resume":
+					resumeFile = args[++index];
+					break;
+				case "-large":
+					large = true;
+					break;
+				case "-portfolio":
+					race = true;
+					break;
+				case "-mask":
+					maskFile = args[++index];
+					break;
+				default:
+					printUsage();
+					return;
+				}
+			}
+		} catch(IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			// you put in something that isn't a number or a tie-break policy,
+			// or left off an option's value
 			printUsage();
 			return;	// end main
 		}
 		
+		// the board is square unless the columns are given
+		if(cols == 0) {
+			cols = boardSize;
+		}
+		
+		// a mask gives the shape of the board itself
+		graph = null;
+		if(maskFile != null) {
+			try {
+				graph = MoveGraph.readMask(new File(maskFile), longLeg, shortLeg);
+			} catch(IOException e) {
+				System.out.println("Mask failed: " + e.getMessage());
+				return;	// end main
+			}
+			boardSize = graph.getRows();
+			cols = graph.getCols();
+		}
+		
 		// integers parsed have unreasonable values
-		if(hType < 0 || hType > 3 || boardSize < 3 || xPos < 0 || xPos >= boardSize || yPos < 0 || yPos >= boardSize) {
+		if(hType < 0 || hType > 3 || boardSize < 3 || cols < 3 || (long) boardSize * cols > Integer.MAX_VALUE
+				|| xPos < 0 || xPos >= boardSize || yPos < 0 || yPos >= cols
+				|| threads < 1 || splitDepth < 1 || floodInterval < 0 || shortLeg < 1 || shortLeg == longLeg
+				|| memoMegabytes < 0 || listTours < 0 || budget < 0 || !(timeout >= 0) || !(progressInterval >= 0)
+				|| (count || listTours > 0) && (boardSize > KnightBitboard.MAX_SIZE || cols > KnightBitboard.MAX_SIZE)
+				|| !(checkpointInterval > 0)
+				|| (checkpointFile != null || resumeFile != null)
+						&& (threads > 1 || count || listTours > 0 || tieBreak == KnightBoard.TieBreak.RANDOM)
+				|| large && (hType != 2 || tourFile == null || threads > 1 || closed || prune || memoMegabytes > 0
+						|| count || listTours > 0 || progressInterval > 0 || checkpointFile != null
+						|| resumeFile != null || tieBreak == KnightBoard.TieBreak.RANDOM)
+				|| race && (large || count || listTours > 0 || checkpointFile != null || resumeFile != null)
+				|| graph != null && (large || count || listTours > 0 || graph.isBlocked(xPos * cols + yPos))) {
 			printUsage();
 			return;	// end main
 		}
+		control = null;
+		if(budget > 0 || timeout > 0) {
+			control = new SearchControl(budget, (long) (timeout * 1000));
+		}
+		
+		// a board too big to keep on the heap goes straight to a file
+		if(large) {
+			runLarge(new MoveGraph(boardSize, cols, longLeg, shortLeg), xPos, yPos, tieBreak, control, tourFile);
+			return;
+		}
 		
 		// Build the board and run the test
-		KnightBoard testBoard = new KnightBoard(hType, boardSize);
-		success = testBoard.runKnightBoard(xPos, yPos);
+		if(graph == null) {
+			graph = new MoveGraph(boardSize, cols, longLeg, shortLeg);
+		}
+		KnightBoard testBoard = new KnightBoard(hType, graph);
+		testBoard.setParallel(threads, splitDepth);
+		testBoard.setPortfolio(race);
+		testBoard.setClosed(closed);
+		if(tieBreak != null) {
+			testBoard.setTieBreak(tieBreak, seed);
+		}
+		testBoard.setPruning(prune, floodInterval);
+		testBoard.setMemo(memoMegabytes << 20, replacement);
+		if(control != null) {
+			testBoard.setControl(control);
+		}
+		
+		// every tour from the square rather than the first one
+		if(count) {
+			KnightCount counter = new KnightCount(testBoard.getGraph(), threads, splitDepth);
+			long tours;
+			
+			counter.setClosed(closed);
+			counter.setPruning(prune, floodInterval);
+			try {
+				tours = counter.count(xPos, yPos);
+			} catch(InterruptedException e) {
+				System.out.println("Count interrupted!");
+				return;
+			}
+			System.out.println(countString(counter, tours, closed));
+			return;
+		}
+		if(listTours > 0) {
+			int[] tourNum = {0};
+			testBoard.tours(xPos, yPos).limit(listTours).forEach(tour -> {
+				System.out.println("Tour " + ++tourNum[0] + ": " + directionString(tour));
+			});
+			return;
+		}
+		
+		// report on the run from another thread while it searches
+		progress = null;
+		monitor = null;
+		if(progressInterval > 0) {
+			progress = new SearchProgress();
+			testBoard.setProgress(progress);
+			monitor = startMonitor(progress, (long) (progressInterval * 1000));
+		}
+		
+		// a resumed run goes on saving to its own checkpoint unless told otherwise
+		if(checkpointFile == null) {
+			checkpointFile = resumeFile;
+		}
+		if(checkpointFile != null) {
+			testBoard.setCheckpoint(new File(checkpointFile), (long) (checkpointInterval * 1000));
+		}
+		
+		try {
+			if(resumeFile != null) {
+				success = testBoard.resumeKnightBoard(xPos, yPos, SearchCheckpoint.read(new File(resumeFile)));
+			} else {
+				success = testBoard.runKnightBoard(xPos, yPos);
+			}
+		} catch(IOException | UncheckedIOException | IllegalArgumentException e) {
+			System.out.println("Checkpoint failed: " + e.getMessage());
+			return;
+		}
+		
+		if(monitor != null) {
+			monitor.interrupt();
+			try {
+				monitor.join();
+			} catch(InterruptedException e) {
+				// the histogram is printed anyway
+			}
+			System.err.print(histogramString(progress));
+		}
 
 		// The start of the string to be returned no matter what.
 		retString = "The total number of moves is ";
 		
 		// determine whether the algorithm found a solution or not
 		if (success) {
-			retString += testBoard.getAttemptedMoves() + "\n";
-			System.out.println(retString + testBoard.toString());
+			retString += testBoard.getAttemptedMoves() + "\n" + workerString(testBoard);
+			if(prune) {
+				retString += "The number of pruned moves is " + testBoard.getPrunedMoves() + "\n";
+			}
+			if(tieBreak != null) {
+				retString += tieString(testBoard);
+			}
+			if(memoMegabytes > 0) {
+				retString += memoString(testBoard);
+			}
+			
+			// the board goes straight to the console, or the tour to a file
+			try {
+				if(tourFile != null) {
+					try(OutputStream file = new FileOutputStream(tourFile)) {
+						testBoard.writeTour(file);
+					}
+					System.out.println(retString + "Tour written to " + tourFile + "\n");
+				} else {
+					Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+					out.write(retString);
+					testBoard.render(out);
+					out.write(System.lineSeparator());
+					out.flush();
+				}
+			} catch(IOException e) {
+				System.out.println("Output failed: " + e.getMessage());
+			}
 		} else {
-			retString += testBoard.getAttemptedMoves() + "\n" + "No solution found!\n";
+			retString += testBoard.getAttemptedMoves() + "\n" + workerString(testBoard);
+			if(prune) {
+				retString += "The number of pruned moves is " + testBoard.getPrunedMoves() + "\n";
+			}
+			if(tieBreak != null) {
+				retString += tieString(testBoard);
+			}
+			if(memoMegabytes > 0) {
+				retString += memoString(testBoard);
+			}
+			switch (testBoard.getStatus()) {
+			case BUDGET_EXCEEDED:
+				retString += "Search budget exceeded!\n";
+				break;
+			case CANCELLED:
+				retString += "Search cancelled!\n";
+				break;
+			default:
+				retString += "No solution found!\n";
+				break;
+			}
 			System.out.println(retString);
 		}
 	}
 	
+	/**
+	 * Runs the tour from every starting square of the board and prints a
+	 * table of the attempted moves for each one
+	 * 
+	 * @param args - heuristic_level board_size -all, optionally followed by -threads t
+	 * 
+	 */
+	private static void runBatch(String args[]) {
+		int hType;
+		int boardSize;
+		int threads;
+		KnightBatch batch;
+
+		// the only option of a batch run is -threads t
+		if(args.length != 3 && !(args.length == 5 && args[3].equals("-threads"))) {
+			printUsage();
+			return;
+		}
+
+		try {
+			hType = Integer.parseInt(args[0]);
+			boardSize = Integer.parseInt(args[1]);
+			threads = args.length == 5 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+		} catch(NumberFormatException e) {
+			// you put in something that isn't a number
+			printUsage();
+			return;	// end main
+		}
+
+		// integers parsed have unreasonable values
+		if(hType < 0 || hType > 3 || boardSize < 3 || threads < 1) {
+			printUsage();
+			return;	// end main
+		}
+
+		batch = new KnightBatch(hType, boardSize, threads);
+		try {
+			batch.run();
+		} catch(InterruptedException e) {
+			System.out.println("Batch run interrupted!");
+			return;
+		}
+		System.out.println(batch.toString());
+	}
+	
+	/**
+	 * Runs Warnsdorff's heuristic with its state off the heap and writes
+	 * the tour to a file as it is found, for boards too big for the grid
+	 * of Positions and the other engines
+	 * 
+	 * @param graph - the board shape and the piece's moves
+	 * @param xPos - starting x position
+	 * @param yPos - starting y position
+	 * @param tieBreak - the tie-break policy, null for the lowest index without reporting ties
+	 * @param control - the budget and deadline of the run, null for none
+	 * @param tourFile - the file to write the tour to
+	 * 
+	 */
+	private static void runLarge(MoveGraph graph, int xPos, int yPos, KnightBoard.TieBreak tieBreak,
+			SearchControl control, String tourFile) {
+		KnightLarge search;
+		boolean success;
+		String retString;
+		
+		try {
+			search = new KnightLarge(graph);
+		} catch(OutOfMemoryError e) {
+			System.out.println("Not enough direct memory, raise -XX:MaxDirectMemorySize");
+			return;
+		}
+		if(tieBreak != null) {
+			search.setTieBreak(tieBreak);
+		}
+		search.setControl(control);
+		success = search.runKnightBoard(xPos, yPos);
+		
+		retString = "The total number of moves is " + search.getAttemptedMoves() + "\n";
+		if(tieBreak != null) {
+			retString += "Ties: " + search.getTies() + ", backtracks: " + search.getBacktracks() + "\n";
+		}
+		
+		if(success) {
+			try(OutputStream file = new FileOutputStream(tourFile)) {
+				search.writeTour(file);
+			} catch(IOException e) {
+				System.out.println("Output failed: " + e.getMessage());
+				return;
+			}
+			retString += "Tour written to " + tourFile + "\n";
+		} else if(control != null && control.getReason() == SearchControl.Stop.CANCELLED) {
+			retString += "Search cancelled!\n";
+		} else if(control != null && control.isStopped()) {
+			retString += "Search budget exceeded!\n";
+		} else {
+			retString += "No solution found!\n";
+		}
+		System.out.println(retString);
+	}
+	
+	/**
+	 * Starts a thread that prints the progress of the run to the error
+	 * stream at a fixed interval until it is interrupted
+	 * 
+	 * @param progress - the progress of the run
+	 * @param intervalMillis - the time between reports
+	 * @return the running thread
+	 * 
+	 */
+	private static Thread startMonitor(SearchProgress progress, long intervalMillis) {
+		Thread retVal = new Thread(() -> {
+			try {
+				while(true) {
+					Thread.sleep(Math.max(intervalMillis, 1));
+					System.err.println("Moves: " + progress.getMoves() + ", per second: " + progress.getMovesPerSecond()
+							+ ", depth: " + progress.getDepth() + ", deepest: " + progress.getMaxDepth());
+				}
+			} catch(InterruptedException e) {
+				// the run is over
+			}
+		});
+		
+		// never keep the program running after the search
+		retVal.setDaemon(true);
+		retVal.start();
+		return retVal;
+	}
+	
+	/**
+	 * Lists the backtracks of the run by the path length they were taken
+	 * back from, leaving out the lengths with none
+	 * 
+	 * @param progress - the progress of the run
+	 * @return one line per path length
+	 * 
+	 */
+	private static String histogramString(SearchProgress progress) {
+		StringBuilder retString = new StringBuilder();
+		
+		for(int length = 1; length <= progress.getSquares(); length++) {
+			long count = progress.getBacktracks(length);
+			if(count > 0) {
+				retString.append("Backtracks from length ").append(length).append(": ").append(count).append('\n');
+			}
+		}
+		return retString.toString();
+	}
+	
+	/**
+	 * Lists the moves attempted by each worker of a parallel run
+	 * 
+	 * @param board - the board that was run
+	 * @return one line per worker, empty if the run was not parallel
+	 * 
+	 */
+	private static String workerString(KnightBoard board) {
+		long[] workerMoves = board.getWorkerMoves();
+		KnightPortfolio portfolio = board.getPortfolio();
+		String retString = "";
+		
+		// a race names its configurations and the winner instead
+		if(portfolio != null) {
+			String[] names = portfolio.getNames();
+			for(int index = 0; index < workerMoves.length; index++) {
+				retString += "Configuration " + names[index] + " attempted " + workerMoves[index] + " moves\n";
+			}
+			retString += "The restarts ran " + portfolio.getRestarts() + " searches\n";
+			if(portfolio.getWinnerName() != null) {
+				retString += "Won by " + portfolio.getWinnerName() + "\n";
+			}
+			return retString;
+		}
+		
+		for(int index = 0; index < workerMoves.length; index++) {
+			retString += "Worker " + index + " attempted " + workerMoves[index] + " moves\n";
+		}
+		return retString;
+	}
+	
+	/**
+	 * Reports how often Warnsdorff's heuristic met a tie, and how often the
+	 * search had to backtrack
+	 * 
+	 * @param board - the board that was run
+	 * @return a single line with both counts
+	 * 
+	 */
+	private static String tieString(KnightBoard board) {
+		return "Ties: " + board.getTies() + ", backtracks: " + board.getBacktracks() + "\n";
+	}
+	
+	/**
+	 * Reports the result of counting tours
+	 * 
+	 * @param counter - the counter that was run
+	 * @param tours - the number of tours it found
+	 * @param closed - true if only closed tours were counted
+	 * @return the count, the attempted moves and the use made of symmetry
+	 * 
+	 */
+	private static String countString(KnightCount counter, long tours, boolean closed) {
+		return "The number of " + (closed ? "closed" : "open") + " tours is " + tours + "\n"
+				+ "The total number of moves is " + counter.getAttemptedMoves() + "\n"
+				+ counter.getSearches() + " of " + counter.getPaths() + " paths searched, the rest counted by "
+				+ counter.getSymmetries() + " symmetries of the starting square\n";
+	}
+	
+	/**
+	 * Writes a tour as the clockwise direction of each move, one digit per
+	 * move
+	 * 
+	 * @param tour - the direction of each move, 0 to 7
+	 * @return the digits
+	 * 
+	 */
+	private static String directionString(byte[] tour) {
+		StringBuilder retString = new StringBuilder(tour.length);
+		
+		for(byte dir : tour) {
+			retString.append(dir);
+		}
+		return retString.toString();
+	}
+	
+	/**
+	 * Reports how the dead state tables were used
+	 * 
+	 * @param board - the board that was run
+	 * @return a single line with the hits, misses and evictions
+	 * 
+	 */
+	private static String memoString(KnightBoard board) {
+		return "Memo hits: " + board.getMemoHits() + ", misses: " + board.getMemoMisses()
+				+ ", evictions: " + board.getMemoEvictions() + "\n";
+	}
+	
 	/**
 	 * Instructions for correct usage of the KnightTour program.
 	 * 
 	 */
 	private static void printUsage() {
-		System.out.println("usage: $ java KnightTour heuristic_level board_size starting_x starting_y\n"
-				+ "	heuristic_level: 0 for no heuristic, 1 for heuristic I, 2 for Warnsdorffs heuristic\n"
+		System.out.println("usage: $ java KnightTour heuristic_level board_size starting_x starting_y [options]\n"
+				+ "       $ java KnightTour heuristic_level board_size -all [-threads t]\n"
+				+ "	heuristic_level: 0 for no heuristic, 1 for heuristic I, 2 for Warnsdorffs heuristic,\n"
+				+ "	                 3 for a constructed tour (even board_size >= 6, otherwise Warnsdorffs)\n"
 				+ "	board_size:      integer >= 3\n"
 				+ "	xPos:            integer 0 - board_size-1\n"
-				+ "	yPos:            integer 0 - board_size-1\n");
+				+ "	yPos:            integer 0 - board_size-1, or 0 - c-1 with -cols c\n"
+				+ "options:\n"
+				+ "	-threads t:      search on t worker threads (default 1)\n"
+				+ "	-split d:        hand each worker the subtree below a d square path (default 3)\n"
+				+ "	-tie p:          Warnsdorff tie-break policy, lowest (default), pohl, roth or random,\n"
+				+ "	                 and report the ties and backtracks\n"
+				+ "	-seed s:         seed of the random tie-break policy (default 0)\n"
+				+ "	-prune:          abandon paths that strand an unvisited square\n"
+				+ "	-flood k:        prune, and check every k squares that the unvisited squares are connected\n"
+				+ "	-cols c:         use a board of board_size rows and c columns (default board_size)\n"
+				+ "	-leaper a,b:     move as an (a,b)-leaper instead of the (2,1) knight, e.g. 3,2 for the zebra\n"
+				+ "	-memo m:         with no heuristic on boards up to 8x8, skip states already proven dead,\n"
+				+ "	                 keeping them in m megabytes, and report the table hits, misses and evictions\n"
+				+ "	-replace r:      how a full memo table makes room, depth (default) keeps the largest\n"
+				+ "	                 proofs, always keeps the newest\n"
+				+ "	-count:          count every tour from the square instead, on boards up to 8x8,\n"
+				+ "	                 searching one path of each symmetric group of d square paths\n"
+				+ "	-list k:         print the first k tours as the clockwise direction of each move\n"
+				+ "	-write f:        write the tour to file f, 3 bits a move, instead of printing the board\n"
+				+ "	-budget n:       give up once n moves have been attempted\n"
+				+ "	-timeout s:      give up after s seconds\n"
+				+ "	-progress s:     report the moves, rate and path length every s seconds on the error\n"
+				+ "	                 stream, then the backtracks at each path length\n"
+				+ "	-checkpoint f:   save the state of the search to file f every -every seconds, and when\n"
+				+ "	                 it is stopped, on a single thread without the random tie-break\n"
+				+ "	-every s:        seconds between checkpoints (default 60)\n"
+				+ "	-resume f:       carry on the search saved in file f, with the same arguments,\n"
+				+ "	                 saving to f from then on unless -checkpoint is given\n"
+				+ "	-large:          with Warnsdorffs heuristic and -write, keep the search state off the heap\n"
+				+ "	                 in under 2 bytes a square, for boards of a hundred million squares\n"
+				+ "	-portfolio:      race border-first, Warnsdorff restarts with doubling budgets and Warnsdorff\n"
+				+ "	                 with random tie-breaks, one per thread (at least 3), the first tour wins\n"
+				+ "	-mask f:         use the board drawn in file f, one line a row, . for a square and #\n"
+				+ "	                 for a blocked square the tour skips, instead of board_size and -cols\n"
+				+ "	-closed:         only accept closed tours, ending a knights move from the start\n"
+				+ "	-all:            run every starting square, searching one square per symmetry class\n"
+				+ "	                 on t threads (default one per processor)\n");
 	}
 }
\ No newline at end of file
@@ -0,0 +1,619 @@
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The squares of a rectangular board and the moves of an (a,b)-leaper
+ * between them, precomputed the first time an engine asks for them so
+ * the search engines only ever walk flat arrays. The knight is the
+ * (2,1)-leaper; the camel (3,1) and the zebra (3,2) are others. Squares
+ * are indexed as x*cols+y, and every square has 8 entries in the move
+ * table, one per direction in clockwise order starting from up a, right
+ * b, holding the target square or -1 where the move leaves the board.
+ * A board may have blocked squares, which no move lands on or leaves, so
+ * a tour only has to visit the usable squares.
+ *
+ * @author Jason Egbert
+ *
+ */
+public final class MoveGraph {
+	/* number of symmetries of a square board */
+	public static final int SYMMETRIES = 8;
+
+	/* Private variables for MoveGraph */
+	private int rows;	// the number of rows of the board
+	private int cols;	// the number of columns of the board
+	private int longLeg;	// the longer leg of the leap, a
+	private int shortLeg;	// the shorter leg of the leap, b
+	private int[] xOffset;	// row change of each clockwise move
+	private int[] yOffset;	// column change of each clockwise move
+	private int[] moves;	// 8 clockwise move targets per square, -1 if off the board or blocked
+	private int[] borderDist;	// distance of each square from the nearest edges
+	private boolean[] blocked;	// the squares no move lands on, null if every square is usable
+	private int usable;	// the number of squares that aren't blocked
+
+	/**
+	 * Builds the move graph of an (a,b)-leaper on a rows x cols board
+	 *
+	 * @param rows - the number of rows
+	 * @param cols - the number of columns
+	 * @param longLeg - the longer leg of the leap
+	 * @param shortLeg - the shorter leg of the leap, at least 1 and less than longLeg
+	 *
+	 */
+	public MoveGraph(int rows, int cols, int longLeg, int shortLeg) {
+		if(shortLeg < 1 || shortLeg >= longLeg) {
+			throw new IllegalArgumentException("a leaper needs legs a > b > 0, not (" + longLeg + "," + shortLeg + ")");
+		}
+
+		this.rows = rows;
+		this.cols = cols;
+		this.longLeg = longLeg;
+		this.shortLeg = shortLeg;
+
+		usable = rows*cols;
+
+		// clockwise from up a, right b
+		xOffset = new int[] {-longLeg, -shortLeg, shortLeg, longLeg, longLeg, shortLeg, -shortLeg, -longLeg};
+		yOffset = new int[] {shortLeg, longLeg, longLeg, shortLeg, -shortLeg, -longLeg, -longLeg, -shortLeg};
+	}
+
+	/**
+	 * Builds the move graph of an (a,b)-leaper on a board with blocked
+	 * squares
+	 *
+	 * @param rows - the number of rows
+	 * @param cols - the number of columns
+	 * @param longLeg - the longer leg of the leap
+	 * @param shortLeg - the shorter leg of the leap, at least 1 and less than longLeg
+	 * @param blocked - true for each square that can't be used, x*cols+y
+	 *
+	 */
+	public MoveGraph(int rows, int cols, int longLeg, int shortLeg, boolean[] blocked) {
+		this(rows, cols, longLeg, shortLeg);
+
+		this.blocked = blocked.clone();
+		for(boolean square : blocked) {
+			if(square) {
+				usable--;
+			}
+		}
+	}
+
+	/**
+	 * Reads a board mask from a text file, one line per row and one
+	 * character per square, '.' for a usable square and '#' for a blocked
+	 * one, and builds the move graph of a leaper on it
+	 *
+	 * @param file - the mask file
+	 * @param longLeg - the longer leg of the leap
+	 * @param shortLeg - the shorter leg of the leap
+	 * @return the move graph of the masked board
+	 * @throws IOException if the file can't be read or isn't a mask
+	 *
+	 */
+	public static MoveGraph readMask(File file, int longLeg, int shortLeg) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		boolean[] blocked;
+		int cols;
+
+		try(BufferedReader in = new BufferedReader(new FileReader(file))) {
+			String line;
+			while((line = in.readLine()) != null) {
+				// blank lines are skipped
+				if(!line.trim().isEmpty()) {
+					lines.add(line.trim());
+				}
+			}
+		}
+
+		if(lines.isEmpty()) {
+			throw new IOException("the mask is empty");
+		}
+		cols = lines.get(0).length();
+		blocked = new boolean[lines.size() * cols];
+		for(int xIndex = 0; xIndex < lines.size(); xIndex++) {
+			String line = lines.get(xIndex);
+			if(line.length() != cols) {
+				throw new IOException("row " + xIndex + " of the mask is not " + cols + " squares long");
+			}
+			for(int yIndex = 0; yIndex < cols; yIndex++) {
+				switch (line.charAt(yIndex)) {
+				case '.':
+					break;
+				case '#':
+					blocked[xIndex*cols + yIndex] = true;
+					break;
+				default:
+					throw new IOException("row " + xIndex + " of the mask has a square that is neither . nor #");
+				}
+			}
+		}
+		return new MoveGraph(lines.size(), cols, longLeg, shortLeg, blocked);
+	}
+
+	/**
+	 * Builds the move graph of the knight on a square board
+	 *
+	 * @param boardSize - the size of one dimension of the board
+	 * @return the knight's move graph
+	 *
+	 */
+	public static MoveGraph knight(int boardSize) {
+		return new MoveGraph(boardSize, boardSize, 2, 1);
+	}
+
+	/**
+	 * get the number of rows of the board
+	 *
+	 * @return rows
+	 *
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * get the number of columns of the board
+	 *
+	 * @return cols
+	 *
+	 */
+	public int getCols() {
+		return cols;
+	}
+
+	/**
+	 * get the longer leg of the leap
+	 *
+	 * @return longLeg
+	 *
+	 */
+	public int getLongLeg() {
+		return longLeg;
+	}
+
+	/**
+	 * get the shorter leg of the leap
+	 *
+	 * @return shortLeg
+	 *
+	 */
+	public int getShortLeg() {
+		return shortLeg;
+	}
+
+	/**
+	 * get the number of squares on the board
+	 *
+	 * @return rows*cols
+	 *
+	 */
+	public int getSize() {
+		return rows*cols;
+	}
+
+	/**
+	 * get the number of squares a tour has to visit
+	 *
+	 * @return usable - the squares that aren't blocked
+	 *
+	 */
+	public int getUsable() {
+		return usable;
+	}
+
+	/**
+	 * Checks whether the board has blocked squares
+	 *
+	 * @return true if some square can't be used
+	 *
+	 */
+	public boolean hasMask() {
+		return blocked != null;
+	}
+
+	/**
+	 * get the blocked squares of the board
+	 *
+	 * @return a copy of blocked - true for each square that can't be used, or null if every square is usable
+	 *
+	 */
+	public boolean[] getBlocked() {
+		return blocked != null ? blocked.clone() : null;
+	}
+
+	/**
+	 * Writes a board's blocked squares to a file, so a file saved for one
+	 * mask is never taken for another. A flag says whether there is a
+	 * mask, followed by one bit a square, 8 squares to a byte with the
+	 * lowest square in the lowest bit.
+	 *
+	 * @param data - the stream to write to
+	 * @param blocked - true for each square that can't be used, or null if every square is usable
+	 * @throws IOException if the stream fails
+	 *
+	 */
+	public static void writeBlocked(DataOutputStream data, boolean[] blocked) throws IOException {
+		data.writeBoolean(blocked != null);
+		if(blocked == null) {
+			return;
+		}
+		for(int square = 0; square < blocked.length; square += 8) {
+			int bits = 0;
+			for(int bit = 0; bit < 8 && square+bit < blocked.length; bit++) {
+				if(blocked[square+bit]) {
+					bits |= 1 << bit;
+				}
+			}
+			data.write(bits);
+		}
+	}
+
+	/**
+	 * Reads the blocked squares written by writeBlocked
+	 *
+	 * @param data - the stream to read from
+	 * @param size - the number of squares of the board
+	 * @return true for each square that can't be used, or null if every square is usable
+	 * @throws IOException if the stream fails
+	 *
+	 */
+	public static boolean[] readBlocked(DataInputStream data, int size) throws IOException {
+		boolean[] retVal;
+		int bits = 0;
+
+		if(!data.readBoolean()) {
+			return null;
+		}
+		retVal = new boolean[size];
+		for(int square = 0; square < size; square++) {
+			if(square % 8 == 0) {
+				bits = data.readUnsignedByte();
+			}
+			retVal[square] = (bits & 1 << square % 8) != 0;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Checks whether a square is blocked
+	 *
+	 * @param square - the square, x*cols+y
+	 * @return true if no move lands on it
+	 *
+	 */
+	public boolean isBlocked(int square) {
+		return blocked != null && blocked[square];
+	}
+
+	/**
+	 * get the row change of a move
+	 *
+	 * @param dir - the clockwise direction of the move
+	 * @return the row offset
+	 *
+	 */
+	public int getXOffset(int dir) {
+		return xOffset[dir];
+	}
+
+	/**
+	 * get the column change of a move
+	 *
+	 * @param dir - the clockwise direction of the move
+	 * @return the column offset
+	 *
+	 */
+	public int getYOffset(int dir) {
+		return yOffset[dir];
+	}
+
+	/**
+	 * get the flat move table, shared rather than copied, so it must not be
+	 * changed. The table takes 32 bytes a square and is only built when
+	 * first asked for.
+	 *
+	 * @return 8 clockwise move targets per square, -1 if off the board
+	 *
+	 */
+	public synchronized int[] getMoves() {
+		if(moves == null) {
+			initMoves();
+		}
+		return moves;
+	}
+
+	/**
+	 * get the distance of every square from its nearest edges, shared
+	 * rather than copied, so it must not be changed
+	 *
+	 * @return the border distance of each square
+	 *
+	 */
+	public synchronized int[] getBorderDist() {
+		if(borderDist == null) {
+			initMoves();
+		}
+		return borderDist;
+	}
+
+	/**
+	 * Works out the target of a move without the move table
+	 *
+	 * @param square - the square moved from, x*cols+y
+	 * @param dir - the clockwise direction of the move
+	 * @return the target square, or -1 if the move leaves the board or lands on a blocked square
+	 *
+	 */
+	public int target(int square, int dir) {
+		int xTarget = square / cols + xOffset[dir];
+		int yTarget = square % cols + yOffset[dir];
+
+		if(xTarget >= 0 && xTarget < rows && yTarget >= 0 && yTarget < cols && !isBlocked(xTarget*cols + yTarget)) {
+			return xTarget*cols + yTarget;
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks whether the piece is the knight on a square board
+	 *
+	 * @return true for the (2,1)-leaper with rows equal to cols
+	 *
+	 */
+	public boolean isSquareKnight() {
+		return longLeg == 2 && shortLeg == 1 && rows == cols;
+	}
+
+	/**
+	 * Checks whether every move lands on the other colour of a chequered
+	 * board, which is the case when a+b is odd. A closed tour of such a
+	 * piece needs an even number of squares.
+	 *
+	 * @return true if the piece always changes colour
+	 *
+	 */
+	public boolean alternatesColour() {
+		return (longLeg + shortLeg) % 2 != 0;
+	}
+
+	/**
+	 * Checks whether the piece is confined to part of the squares, so no
+	 * tour can exist. A leaper with a+b even keeps to one colour, and one
+	 * whose legs share a factor keeps to one lattice of the board.
+	 *
+	 * @return true if the piece can't reach every square of a board larger
+	 * than one square
+	 *
+	 */
+	public boolean isConfined() {
+		int first = longLeg;
+		int second = shortLeg;
+
+		// Euclid's algorithm for the common factor of the legs
+		while(second != 0) {
+			int rest = first % second;
+			first = second;
+			second = rest;
+		}
+		return rows*cols > 1 && (!alternatesColour() || first != 1);
+	}
+
+	/**
+	 * Runs the quick checks that a tour from a square of a masked board
+	 * can exist, before any search. Every usable square has to be
+	 * connected to the start through the moves between usable squares.
+	 * For a piece that always changes colour, a path from the start has
+	 * as many squares of the start's colour as of the other colour, or one
+	 * more, and a closed tour exactly as many. A board without blocked
+	 * squares passes, as isConfined and the engines' own checks cover it.
+	 *
+	 * @param start - the starting square, x*cols+y
+	 * @param closed - true if the tour has to end a move from the start
+	 * @return false if no tour from the start can exist
+	 *
+	 */
+	public boolean isFeasible(int start, boolean closed) {
+		int[] table = getMoves();
+		int[] queue;
+		boolean[] reached;
+		int first = 0;
+		int last = 0;
+		int sameColour = 0;
+
+		if(blocked == null) {
+			return true;
+		}
+		if(blocked[start]) {
+			return false;
+		}
+
+		// every usable square reachable from the start
+		queue = new int[usable];
+		reached = new boolean[rows*cols];
+		queue[last++] = start;
+		reached[start] = true;
+		while(first < last) {
+			int square = queue[first++];
+			if((square / cols + square % cols) % 2 == (start / cols + start % cols) % 2) {
+				sameColour++;
+			}
+			for(int dir = 0; dir < 8; dir++) {
+				int target = table[square*8 + dir];
+				if(target >= 0 && !reached[target]) {
+					reached[target] = true;
+					queue[last++] = target;
+				}
+			}
+		}
+		if(last != usable) {
+			return false;
+		}
+
+		// the path takes turns between the colours, starting on the start's
+		if(alternatesColour()) {
+			int otherColour = usable - sameColour;
+			return sameColour == otherColour || (!closed && sameColour == otherColour + 1);
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether one of the 8 symmetries of a square maps this board
+	 * onto itself. A board that isn't square keeps only the identity, the
+	 * half turn and the two reflections along its sides. Every symmetry
+	 * of the board maps the piece's moves onto its moves.
+	 *
+	 * @param sym - the symmetry, 0 to 7, as numbered by transform
+	 * @return true if the symmetry maps the board onto itself
+	 *
+	 */
+	public boolean hasSymmetry(int sym) {
+		if(!(rows == cols || sym == 0 || sym == 2 || sym == 4 || sym == 5)) {
+			return false;
+		}
+
+		// the blocked squares have to map onto blocked squares too
+		for(int square = 0; blocked != null && square < blocked.length; square++) {
+			if(blocked[square] != blocked[transform(sym, square)]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Applies one of the board's symmetries to a square: the identity, the
+	 * three rotations, and the four reflections
+	 *
+	 * @param sym - the symmetry, 0 to 7, one for which hasSymmetry holds
+	 * @param square - the square, x*cols+y
+	 * @return the image of the square
+	 *
+	 */
+	public int transform(int sym, int square) {
+		int xPos = square / cols;
+		int yPos = square % cols;
+		int xLast = rows-1;
+		int yLast = cols-1;
+		int xImage;
+		int yImage;
+
+		switch (sym) {
+		case 0:		// identity
+			xImage = xPos;
+			yImage = yPos;
+			break;
+		case 1:		// rotate 90 degrees
+			xImage = yPos;
+			yImage = xLast - xPos;
+			break;
+		case 2:		// rotate 180 degrees
+			xImage = xLast - xPos;
+			yImage = yLast - yPos;
+			break;
+		case 3:		// rotate 270 degrees
+			xImage = yLast - yPos;
+			yImage = xPos;
+			break;
+		case 4:		// reflect left to right
+			xImage = xPos;
+			yImage = yLast - yPos;
+			break;
+		case 5:		// reflect top to bottom
+			xImage = xLast - xPos;
+			yImage = yPos;
+			break;
+		case 6:		// reflect on the main diagonal
+			xImage = yPos;
+			yImage = xPos;
+			break;
+		default:	// reflect on the anti-diagonal
+			xImage = yLast - yPos;
+			yImage = xLast - xPos;
+			break;
+		}
+		return xImage*cols + yImage;
+	}
+
+	/**
+	 * Follows a tour given as move directions from its starting square
+	 *
+	 * @param start - the starting square, x*cols+y
+	 * @param directions - the clockwise direction of each move, 0 to 7
+	 * @return every square of the tour in order, starting square first
+	 *
+	 */
+	public int[] path(int start, byte[] directions) {
+		int[] retVal = new int[directions.length + 1];
+
+		retVal[0] = start;
+		for(int index = 0; index < directions.length; index++) {
+			retVal[index+1] = target(retVal[index], directions[index]);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the index of a square
+	 *
+	 * @param xPos - the row of the square
+	 * @param yPos - the column of the square
+	 * @return x*cols+y
+	 *
+	 */
+	public int square(int xPos, int yPos) {
+		return xPos*cols + yPos;
+	}
+
+	/**
+	 * Fills in the move table and border distances
+	 *
+	 */
+	private void initMoves() {
+		int size = rows*cols;
+
+		moves = new int[size*8];
+		borderDist = new int[size];
+
+		for(int xIndex = 0; xIndex < rows; xIndex++) {
+			for(int yIndex = 0; yIndex < cols; yIndex++) {
+				int square = xIndex*cols + yIndex;
+
+				borderDist[square] = checkBorder(xIndex, rows) + checkBorder(yIndex, cols);
+				for(int dir = 0; dir < 8; dir++) {
+					int xTarget = xIndex + xOffset[dir];
+					int yTarget = yIndex + yOffset[dir];
+
+					// a blocked square has no moves, and no move lands on one
+					if(xTarget >= 0 && xTarget < rows && yTarget >= 0 && yTarget < cols && !isBlocked(square)
+							&& !isBlocked(xTarget*cols + yTarget)) {
+						moves[square*8 + dir] = xTarget*cols + yTarget;
+					} else {
+						moves[square*8 + dir] = -1;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks the distance from the input index to the nearest edge
+	 *
+	 * @param index - the x or y coordinate of the position to be checked
+	 * @param length - the number of rows or columns in that direction
+	 * @return the distance of the coordinate from the closest edge
+	 *
+	 */
+	private static int checkBorder(int index, int length) {
+		int middle = length/2;
+
+		return index < middle ? index : length-1 - index;
+	}
+}
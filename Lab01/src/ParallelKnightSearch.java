@@ -0,0 +1,336 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Runs a Knight's Tour search on several cores. The search tree is first
+ * expanded in heuristic order down to a fixed number of squares, then
+ * every subtree below that depth is handed to a ForkJoinPool worker that
+ * searches it on its own engine. The first worker to complete a tour
+ * raises a shared flag which stops every other worker.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class ParallelKnightSearch {
+	/* Private variables for ParallelKnightSearch */
+	private Supplier<KnightSearchEngine> engines;	// builds a fresh engine for the board
+	private int threads;	// the number of worker threads
+	private int splitDepth;	// the number of squares on the path handed to each worker
+	private AtomicBoolean found;	// raised once any worker has completed a tour
+	private ThreadLocal<Worker> worker;	// the engine and counters of the current worker thread
+	private List<Worker> workers;	// every worker that has searched a subtree
+	private long expandMoves;	// attempted moves used to expand the top of the tree
+	private long expandTies;	// Warnsdorff ties met while expanding the top of the tree
+	private long expandBacktracks;	// backtracks made while expanding the top of the tree
+	private long expandPruned;	// moves pruned while expanding the top of the tree
+	private long[] expandMemo;	// dead state table hits, misses and evictions while expanding
+	private volatile KnightEngine winner;	// the engine holding the completed tour
+	private SearchControl control;	// the limits shared by every engine, null for none
+
+	/**
+	 * Sets up a parallel search
+	 *
+	 * @param engines - builds a fresh engine for the board, one per worker
+	 * @param threads - the number of worker threads
+	 * @param splitDepth - the number of squares on the path handed to each worker
+	 *
+	 */
+	public ParallelKnightSearch(Supplier<KnightSearchEngine> engines, int threads, int splitDepth) {
+		this.engines = engines;
+		this.threads = threads;
+		this.splitDepth = splitDepth;
+	}
+
+	/**
+	 * Shares limits between the workers, so that none starts a subtree once
+	 * the run has been stopped. The engines built by the supplier have to
+	 * be given the same control to stop in the middle of a subtree.
+	 *
+	 * @param control - the shared limits, or null for none
+	 *
+	 */
+	public void setControl(SearchControl control) {
+		this.control = control;
+	}
+
+	/**
+	 * Runs the tour from the given starting square
+	 *
+	 * @param xPos - starting x position
+	 * @param yPos - starting y position
+	 * @return false for failure, true for success
+	 *
+	 */
+	public boolean runKnightBoard(int xPos, int yPos) {
+		KnightSearchEngine root = engines.get();
+		List<int[]> prefixes = new ArrayList<int[]>();
+		ForkJoinPool pool;
+
+		found = new AtomicBoolean(false);
+		workers = new ArrayList<Worker>();
+		worker = ThreadLocal.withInitial(this::newWorker);
+		winner = null;
+
+		// the top of the tree is small, expand it on this thread
+		if(root.expand(root.square(xPos, yPos), splitDepth, prefixes)) {
+			winner = root;
+		}
+		expandMoves = root.getAttemptedMoves();
+		expandTies = root.getTies();
+		expandBacktracks = root.getBacktracks();
+		expandPruned = root.getPrunedMoves();
+		expandMemo = new long[] {root.getMemoHits(), root.getMemoMisses(), root.getMemoEvictions()};
+
+		if(winner == null && !prefixes.isEmpty()) {
+			pool = new ForkJoinPool(threads);
+			try {
+				pool.invoke(new SubtreeTask(prefixes, 0, prefixes.size()));
+			} finally {
+				pool.shutdown();
+			}
+		}
+
+		return winner != null;
+	}
+
+	/**
+	 * Returns the engine holding the completed tour
+	 *
+	 * @return the winning engine, or null if no tour was found
+	 *
+	 */
+	public KnightEngine getWinner() {
+		return winner;
+	}
+
+	/**
+	 * get attempted move count summed over the expansion and every worker
+	 *
+	 * @return the total number of attempted moves
+	 *
+	 */
+	public long getAttemptedMoves() {
+		long retVal = expandMoves;
+
+		for(long moves : getWorkerMoves()) {
+			retVal += moves;
+		}
+		return retVal;
+	}
+
+	/**
+	 * get the Warnsdorff ties summed over the expansion and every worker
+	 *
+	 * @return the total number of ties
+	 *
+	 */
+	public long getTies() {
+		long retVal = expandTies;
+
+		synchronized(workers) {
+			for(Worker current : workers) {
+				retVal += current.ties;
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * get the backtracks summed over the expansion and every worker
+	 *
+	 * @return the total number of backtracks
+	 *
+	 */
+	public long getBacktracks() {
+		long retVal = expandBacktracks;
+
+		synchronized(workers) {
+			for(Worker current : workers) {
+				retVal += current.backtracks;
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * get the pruned moves summed over the expansion and every worker
+	 *
+	 * @return the total number of pruned moves
+	 *
+	 */
+	public long getPrunedMoves() {
+		long retVal = expandPruned;
+
+		synchronized(workers) {
+			for(Worker current : workers) {
+				retVal += current.pruned;
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * get the dead state table hits summed over the expansion and every
+	 * worker
+	 *
+	 * @return the total number of hits
+	 *
+	 */
+	public long getMemoHits() {
+		return memoTotal(0);
+	}
+
+	/**
+	 * get the dead state table misses summed over the expansion and every
+	 * worker
+	 *
+	 * @return the total number of misses
+	 *
+	 */
+	public long getMemoMisses() {
+		return memoTotal(1);
+	}
+
+	/**
+	 * get the dead state table evictions summed over the expansion and
+	 * every worker
+	 *
+	 * @return the total number of evictions
+	 *
+	 */
+	public long getMemoEvictions() {
+		return memoTotal(2);
+	}
+
+	/**
+	 * Sums one of the dead state table counters
+	 *
+	 * @param counter - 0 for hits, 1 for misses, 2 for evictions
+	 * @return the total over the expansion and every worker
+	 *
+	 */
+	private long memoTotal(int counter) {
+		long retVal = expandMemo[counter];
+
+		synchronized(workers) {
+			for(Worker current : workers) {
+				retVal += current.memo[counter];
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the number of moves each worker attempted, in the order the
+	 * workers started
+	 *
+	 * @return attempted moves per worker
+	 *
+	 */
+	public long[] getWorkerMoves() {
+		long[] retVal;
+
+		synchronized(workers) {
+			retVal = new long[workers.size()];
+			for(int index = 0; index < retVal.length; index++) {
+				retVal[index] = workers.get(index).moves;
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Creates the engine for a new worker thread and registers it
+	 *
+	 * @return the new worker
+	 *
+	 */
+	private Worker newWorker() {
+		Worker retVal = new Worker(engines.get());
+
+		retVal.engine.setCancelFlag(found);
+		synchronized(workers) {
+			workers.add(retVal);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Searches one subtree on the calling worker's engine
+	 *
+	 * @param prefix - the path leading to the subtree
+	 *
+	 */
+	private void searchSubtree(int[] prefix) {
+		Worker current;
+
+		// a tour has already been found or the run is over, don't start another subtree
+		if(found.get() || (control != null && control.isStopped())) {
+			return;
+		}
+
+		current = worker.get();
+		boolean success = current.engine.runFrom(prefix);
+		current.moves += current.engine.getAttemptedMoves();
+		current.ties += current.engine.getTies();
+		current.backtracks += current.engine.getBacktracks();
+		current.pruned += current.engine.getPrunedMoves();
+		current.memo[0] += current.engine.getMemoHits();
+		current.memo[1] += current.engine.getMemoMisses();
+		current.memo[2] += current.engine.getMemoEvictions();
+
+		if(success && found.compareAndSet(false, true)) {
+			winner = current.engine;
+		}
+	}
+
+	/**
+	 * The engine owned by one worker thread, and the moves, ties,
+	 * backtracks, pruned moves and dead state table counters of every
+	 * subtree it has searched
+	 *
+	 */
+	private static class Worker {
+		private KnightSearchEngine engine;
+		private long moves;
+		private long ties;
+		private long backtracks;
+		private long pruned;
+		private long[] memo = new long[3];
+
+		private Worker(KnightSearchEngine engine) {
+			this.engine = engine;
+		}
+	}
+
+	/**
+	 * Splits a range of subtrees in half until a single subtree is left,
+	 * which is then searched by whichever worker runs the task
+	 *
+	 */
+	private class SubtreeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private List<int[]> prefixes;
+		private int low;
+		private int high;
+
+		private SubtreeTask(List<int[]> prefixes, int low, int high) {
+			this.prefixes = prefixes;
+			this.low = low;
+			this.high = high;
+		}
+
+		protected void compute() {
+			if(high - low == 1) {
+				searchSubtree(prefixes.get(low));
+			} else {
+				int middle = (low + high) >>> 1;
+				invokeAll(new SubtreeTask(prefixes, low, middle), new SubtreeTask(prefixes, middle, high));
+			}
+		}
+	}
+}
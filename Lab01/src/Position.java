@@ -9,7 +9,7 @@
  */
 public class Position {
 	private enum Occupation {
-		OPEN, OCCUPIED
+		OPEN, OCCUPIED, BLOCKED
 	}
 	private int moveNum;
 	private Occupation occ;
@@ -51,7 +51,8 @@ public class Position {
 	/**
 	 * Alters the status of the position object's occupation
 	 * 
-	 * @param status - 0 is open, 1 is used, 2 is occupied
+	 * @param status - 0 is open, 1 is used, 2 is occupied by something
+	 *                 else, so the knight can never use it
 	 * 
 	 */
 	public void setOccupation(int status) {
@@ -62,6 +63,9 @@ public class Position {
 		case 1:
 			occ = Occupation.OCCUPIED;
 			break;
+		case 2:
+			occ = Occupation.BLOCKED;
+			break;
 		default:
 			System.out.println("Invalid Occupation Status\n");
 			break;
@@ -83,6 +87,9 @@ public class Position {
 		case OCCUPIED:
 			retVal = 1;
 			break;
+		case BLOCKED:
+			retVal = 2;
+			break;
 		default:
 			retVal = -1;
 			break;
@@ -0,0 +1,269 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * The state of a search part way through, so that it can be stopped and
+ * later carried on to the same tour with the same number of attempted
+ * moves. The state is the current path, the index of the next candidate
+ * to try at each of its squares and the counters of the run. Everything
+ * else an engine keeps, such as the candidate lists and the degrees of
+ * the squares, follows from the path, and is rebuilt by replaying it.
+ *
+ * The file starts with the board, its blocked squares, the piece and the
+ * search settings, so a checkpoint is never carried on with other
+ * settings or another mask, followed by the counters and then each square
+ * of the path with its next candidate.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class SearchCheckpoint {
+	/* marks the start of a checkpoint, "KCP2" */
+	private static final int MAGIC = 0x4B435032;
+
+	/* Private variables for SearchCheckpoint */
+	private int rows;	// the number of rows of the board
+	private int cols;	// the number of columns of the board
+	private boolean[] blocked;	// the squares that can't be used, null if every square is usable
+	private int longLeg;	// the longer leg of the piece's leap
+	private int shortLeg;	// the shorter leg of the piece's leap
+	private KnightBoard.Heuristic type;	// the heuristic the engine searched with
+	private boolean closed;	// only closed tours were accepted
+	private boolean prune;	// the pruning checks were on
+	private int floodInterval;	// path lengths between connectivity checks, 0 for none
+	private KnightBoard.TieBreak tieBreak;	// how Warnsdorff ordered candidates of equal degree
+	private int[] path;	// the squares of the current path, x*cols+y, starting square first
+	private byte[] next;	// the index of the next candidate to try at each square of the path
+	private long attemptedMoves;	// the attempted moves of the run so far
+	private long ties;	// the Warnsdorff ties of the run so far
+	private long backtracks;	// the backtracks of the run so far
+	private long prunedMoves;	// the pruned moves of the run so far
+
+	/**
+	 * Captures the state of a search
+	 *
+	 * @param graph - the board shape and the piece's moves
+	 * @param type - the heuristic the engine searches with
+	 * @param closed - true if only closed tours are accepted
+	 * @param prune - true if the pruning checks are on
+	 * @param floodInterval - path lengths between connectivity checks, 0 for none
+	 * @param tieBreak - how Warnsdorff orders candidates of equal degree
+	 * @param path - the squares of the current path, x*cols+y, starting square first
+	 * @param next - the index of the next candidate to try at each square
+	 * @param counters - the attempted moves, ties, backtracks and pruned moves so far
+	 *
+	 */
+	public SearchCheckpoint(MoveGraph graph, KnightBoard.Heuristic type, boolean closed, boolean prune,
+			int floodInterval, KnightBoard.TieBreak tieBreak, int[] path, byte[] next, long[] counters) {
+		rows = graph.getRows();
+		cols = graph.getCols();
+		blocked = graph.getBlocked();
+		longLeg = graph.getLongLeg();
+		shortLeg = graph.getShortLeg();
+		this.type = type;
+		this.closed = closed;
+		this.prune = prune;
+		this.floodInterval = floodInterval;
+		this.tieBreak = tieBreak;
+		this.path = path;
+		this.next = next;
+		attemptedMoves = counters[0];
+		ties = counters[1];
+		backtracks = counters[2];
+		prunedMoves = counters[3];
+	}
+
+	/**
+	 * Sets up an empty checkpoint to be filled in by read
+	 *
+	 */
+	private SearchCheckpoint() {
+	}
+
+	/**
+	 * Writes the checkpoint to a file. It is written to a temporary file
+	 * next to it first and then renamed over it, so a crash part way
+	 * through leaves the last checkpoint as it was.
+	 *
+	 * @param file - the file to write
+	 * @throws IOException if the file can't be written
+	 *
+	 */
+	public void write(File file) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+
+		try(DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+			data.writeInt(MAGIC);
+			data.writeInt(rows);
+			data.writeInt(cols);
+			MoveGraph.writeBlocked(data, blocked);
+			data.writeInt(longLeg);
+			data.writeInt(shortLeg);
+			data.writeByte(type.ordinal());
+			data.writeBoolean(closed);
+			data.writeBoolean(prune);
+			data.writeInt(floodInterval);
+			data.writeByte(tieBreak.ordinal());
+			data.writeLong(attemptedMoves);
+			data.writeLong(ties);
+			data.writeLong(backtracks);
+			data.writeLong(prunedMoves);
+			data.writeInt(path.length);
+			for(int level = 0; level < path.length; level++) {
+				data.writeInt(path[level]);
+				data.writeByte(next[level]);
+			}
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a checkpoint written by write
+	 *
+	 * @param file - the file to read
+	 * @return the checkpoint
+	 * @throws IOException if the file can't be read or doesn't hold a checkpoint
+	 *
+	 */
+	public static SearchCheckpoint read(File file) throws IOException {
+		SearchCheckpoint retVal = new SearchCheckpoint();
+
+		try(DataInputStream data = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if(data.readInt() != MAGIC) {
+				throw new IOException("not a search checkpoint");
+			}
+			retVal.rows = data.readInt();
+			retVal.cols = data.readInt();
+			if((long) retVal.rows * retVal.cols > Integer.MAX_VALUE) {
+				throw new IOException("not a search checkpoint");
+			}
+			retVal.blocked = MoveGraph.readBlocked(data, retVal.rows * retVal.cols);
+			retVal.longLeg = data.readInt();
+			retVal.shortLeg = data.readInt();
+			retVal.type = KnightBoard.Heuristic.values()[data.readByte()];
+			retVal.closed = data.readBoolean();
+			retVal.prune = data.readBoolean();
+			retVal.floodInterval = data.readInt();
+			retVal.tieBreak = KnightBoard.TieBreak.values()[data.readByte()];
+			retVal.attemptedMoves = data.readLong();
+			retVal.ties = data.readLong();
+			retVal.backtracks = data.readLong();
+			retVal.prunedMoves = data.readLong();
+			retVal.path = new int[data.readInt()];
+			retVal.next = new byte[retVal.path.length];
+			for(int level = 0; level < retVal.path.length; level++) {
+				retVal.path[level] = data.readInt();
+				retVal.next[level] = data.readByte();
+			}
+		} catch(ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+			// a setting or length that no checkpoint has
+			throw new IOException("not a search checkpoint");
+		}
+		return retVal;
+	}
+
+	/**
+	 * Checks whether the checkpoint was taken by a search with the given
+	 * board, mask, piece and settings, the only search that can carry it
+	 * on, and whether its path is one the piece can take
+	 *
+	 * @param graph - the board shape and the piece's moves
+	 * @param type - the heuristic of the search
+	 * @param closed - true if only closed tours are accepted
+	 * @param prune - true if the pruning checks are on
+	 * @param floodInterval - path lengths between connectivity checks, 0 for none
+	 * @param tieBreak - how Warnsdorff orders candidates of equal degree
+	 * @return true if every setting matches and the path is a path of the piece on the board
+	 *
+	 */
+	public boolean fits(MoveGraph graph, KnightBoard.Heuristic type, boolean closed, boolean prune,
+			int floodInterval, KnightBoard.TieBreak tieBreak) {
+		boolean[] visited;
+
+		if(rows != graph.getRows() || cols != graph.getCols() || !Arrays.equals(blocked, graph.getBlocked())
+				|| longLeg != graph.getLongLeg() || shortLeg != graph.getShortLeg() || this.type != type || this.closed != closed
+				|| this.prune != prune || this.floodInterval != floodInterval || this.tieBreak != tieBreak
+				|| path.length == 0 || path.length > graph.getUsable()) {
+			return false;
+		}
+
+		// a damaged file could still point off the board, at a blocked square,
+		// at a square already on the path or at one the last square has no move to
+		visited = new boolean[graph.getSize()];
+		for(int level = 0; level < path.length; level++) {
+			if(path[level] < 0 || path[level] >= graph.getSize() || graph.isBlocked(path[level]) || visited[path[level]]
+					|| next[level] < 0 || next[level] > 8 || level > 0 && !isMove(graph, path[level-1], path[level])) {
+				return false;
+			}
+			visited[path[level]] = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the piece can move straight from one square to another
+	 *
+	 * @param graph - the board shape and the piece's moves
+	 * @param from - the square moved from, x*cols+y
+	 * @param to - the square moved to, x*cols+y
+	 * @return true if one of the piece's moves joins them
+	 *
+	 */
+	private static boolean isMove(MoveGraph graph, int from, int to) {
+		for(int dir = 0; dir < 8; dir++) {
+			if(graph.target(from, dir) == to) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * get the starting square of the search
+	 *
+	 * @return the first square of the path, x*cols+y
+	 *
+	 */
+	public int getStart() {
+		return path[0];
+	}
+
+	/**
+	 * get the squares of the current path
+	 *
+	 * @return path - x*cols+y, starting square first
+	 *
+	 */
+	public int[] getPath() {
+		return path;
+	}
+
+	/**
+	 * get the index of the next candidate to try at each square of the path
+	 *
+	 * @return next - one index per square of the path
+	 *
+	 */
+	public byte[] getNext() {
+		return next;
+	}
+
+	/**
+	 * get the counters of the run up to the checkpoint
+	 *
+	 * @return the attempted moves, ties, backtracks and pruned moves
+	 *
+	 */
+	public long[] getCounters() {
+		return new long[] {attemptedMoves, ties, backtracks, prunedMoves};
+	}
+}
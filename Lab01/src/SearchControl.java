@@ -0,0 +1,143 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits on a search run: a budget of attempted moves, a wall-clock
+ * deadline, and a handle any thread can use to cancel the run. The
+ * engines charge their attempted moves to the control at the same points
+ * they poll for cancellation, once every few thousand moves, and stop
+ * cleanly as soon as it reports that the run is over. One control can be
+ * shared by every engine of a parallel run, which then share the budget.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class SearchControl {
+	/* enumeration for why a run was stopped */
+	enum Stop {
+		NONE,	// still running, or finished on its own
+		BUDGET,	// the attempted moves ran past the budget
+		DEADLINE,	// the time limit ran out
+		CANCELLED	// cancel() was called
+	}
+
+	/* Private variables for SearchControl */
+	private long moveBudget;	// the most attempted moves, 0 for no limit
+	private long timeLimit;	// the most nanoseconds a run may take, 0 for no limit
+	private long deadline;	// System.nanoTime() at which the current run is over
+	private AtomicLong spent;	// attempted moves charged so far
+	private AtomicBoolean cancelled;	// raised by cancel()
+	private volatile Stop reason;	// why the run was stopped
+
+	/**
+	 * Sets up the limits of a run
+	 *
+	 * @param moveBudget - the most attempted moves, 0 for no limit
+	 * @param timeLimitMillis - the most milliseconds a run may take, 0 for no limit
+	 *
+	 */
+	public SearchControl(long moveBudget, long timeLimitMillis) {
+		this.moveBudget = moveBudget;
+		timeLimit = timeLimitMillis * 1000000L;
+		spent = new AtomicLong();
+		cancelled = new AtomicBoolean();
+		reason = Stop.NONE;
+	}
+
+	/**
+	 * Starts the clock and the budget of a new run. A cancel made before
+	 * the run starts still stops it.
+	 *
+	 */
+	public void start() {
+		deadline = System.nanoTime() + timeLimit;
+		spent.set(0);
+		reason = cancelled.get() ? Stop.CANCELLED : Stop.NONE;
+	}
+
+	/**
+	 * Asks the run to stop at the engines' next check. Safe to call from
+	 * any thread.
+	 *
+	 */
+	public void cancel() {
+		cancelled.set(true);
+	}
+
+	/**
+	 * Charges attempted moves to the run and checks every limit
+	 *
+	 * @param moves - the moves attempted since the engine's last charge
+	 * @return true if the run should stop
+	 *
+	 */
+	public boolean charge(long moves) {
+		long total = spent.addAndGet(moves);
+
+		if(reason != Stop.NONE) {
+			return true;
+		}
+		if(cancelled.get()) {
+			reason = Stop.CANCELLED;
+		} else if(moveBudget > 0 && total >= moveBudget) {
+			reason = Stop.BUDGET;
+		} else if(timeLimit > 0 && System.nanoTime() - deadline >= 0) {
+			reason = Stop.DEADLINE;
+		}
+		return reason != Stop.NONE;
+	}
+
+	/**
+	 * Counts attempted moves toward the budget without checking the
+	 * limits, for an engine that has finished its part of the run and so
+	 * can't be stopped any more. Its moves still count against the engines
+	 * that are left.
+	 *
+	 * @param moves - the moves attempted since the engine's last charge
+	 *
+	 */
+	public void spend(long moves) {
+		spent.addAndGet(moves);
+	}
+
+	/**
+	 * Checks whether the run has been stopped
+	 *
+	 * @return true once any limit has stopped the run
+	 *
+	 */
+	public boolean isStopped() {
+		return reason != Stop.NONE;
+	}
+
+	/**
+	 * get why the run was stopped
+	 *
+	 * @return reason - NONE if it wasn't
+	 *
+	 */
+	public Stop getReason() {
+		return reason;
+	}
+
+	/**
+	 * get the attempted moves the budget has left, so the engines can
+	 * poll exactly when it runs out
+	 *
+	 * @return the moves left, at most 0 once spent, or Long.MAX_VALUE for no budget
+	 *
+	 */
+	public long getMovesLeft() {
+		return moveBudget > 0 ? moveBudget - spent.get() : Long.MAX_VALUE;
+	}
+
+	/**
+	 * get the attempted moves charged to the run so far
+	 *
+	 * @return the charged moves, up to a few thousand behind per engine
+	 *
+	 */
+	public long getSpent() {
+		return spent.get();
+	}
+}
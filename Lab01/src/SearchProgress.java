@@ -0,0 +1,133 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A live view of a running search that any thread can read. The engines
+ * only write to it at the points where they poll for cancellation, once
+ * every few thousand attempted moves, and keep their own plain counters
+ * in between, so watching a run costs it next to nothing. The figures
+ * are therefore up to a few thousand moves behind the search itself.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class SearchProgress {
+	/* Private variables for SearchProgress */
+	private volatile long startTime;	// System.nanoTime() when the run started
+	private volatile long moves;	// attempted moves reported so far
+	private volatile int depth;	// the path length at the last report
+	private volatile int maxDepth;	// the longest path reported
+	private volatile AtomicLongArray backtracks;	// squares taken back, by the path length they were taken back from
+
+	/**
+	 * Sets up an empty progress view
+	 *
+	 */
+	public SearchProgress() {
+		backtracks = new AtomicLongArray(0);
+	}
+
+	/**
+	 * Clears the view for a new run
+	 *
+	 * @param squares - the number of squares on the board, the longest possible path
+	 *
+	 */
+	public void start(int squares) {
+		backtracks = new AtomicLongArray(squares+1);
+		moves = 0;
+		depth = 0;
+		maxDepth = 0;
+		startTime = System.nanoTime();
+	}
+
+	/**
+	 * Reports the work an engine has done since its last report. More than
+	 * one engine may report at once.
+	 *
+	 * @param newMoves - moves attempted since the last report
+	 * @param pathLength - the engine's current path length
+	 * @param longest - the longest path the engine has reached
+	 *
+	 */
+	public synchronized void report(long newMoves, int pathLength, int longest) {
+		moves += newMoves;
+		depth = pathLength;
+		if(longest > maxDepth) {
+			maxDepth = longest;
+		}
+	}
+
+	/**
+	 * Adds an engine's backtracks at one path length
+	 *
+	 * @param pathLength - the path length the squares were taken back from
+	 * @param count - the number of squares taken back there
+	 *
+	 */
+	public void addBacktracks(int pathLength, long count) {
+		backtracks.addAndGet(pathLength, count);
+	}
+
+	/**
+	 * get the attempted moves reported so far
+	 *
+	 * @return moves
+	 *
+	 */
+	public long getMoves() {
+		return moves;
+	}
+
+	/**
+	 * get the rate of the run so far
+	 *
+	 * @return attempted moves per second since the run started
+	 *
+	 */
+	public long getMovesPerSecond() {
+		long elapsed = System.nanoTime() - startTime;
+
+		return elapsed > 0 ? (long) (moves * 1e9 / elapsed) : 0;
+	}
+
+	/**
+	 * get the path length at the last report
+	 *
+	 * @return depth
+	 *
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * get the longest path reported so far
+	 *
+	 * @return maxDepth
+	 *
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * get the squares taken back from one path length
+	 *
+	 * @param pathLength - the path length, 1 to the number of squares
+	 * @return the number of backtracks from that length
+	 *
+	 */
+	public long getBacktracks(int pathLength) {
+		return backtracks.get(pathLength);
+	}
+
+	/**
+	 * get the longest path length the backtrack histogram covers
+	 *
+	 * @return the number of squares of the current run
+	 *
+	 */
+	public int getSquares() {
+		return backtracks.length()-1;
+	}
+}
@@ -0,0 +1,76 @@
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Hands out the tours from a starting square one at a time, in the order
+ * the engine's search reaches them. The search only goes on to the next
+ * tour when the next one is asked for, so taking the first few tours of
+ * a board with millions of them costs no more than finding those few.
+ * Each tour is given as the clockwise direction, 0 to 7, of each of its
+ * moves, which MoveGraph.path turns back into squares.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class TourSpliterator implements Spliterator<byte[]> {
+	/* Private variables for TourSpliterator */
+	private KnightBitboard engine;	// the engine holding the search
+	private int xPos;	// the x coordinate of the starting square
+	private int yPos;	// the y coordinate of the starting square
+	private boolean started;	// the first tour has been searched for
+	private boolean finished;	// every tour has been handed out
+
+	/**
+	 * Sets up the tours from a starting square, without searching yet
+	 *
+	 * @param engine - the engine to search on, not used by anything else
+	 * @param xPos - the x coordinate of the starting square
+	 * @param yPos - the y coordinate of the starting square
+	 *
+	 */
+	public TourSpliterator(KnightBitboard engine, int xPos, int yPos) {
+		this.engine = engine;
+		this.xPos = xPos;
+		this.yPos = yPos;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Spliterator#tryAdvance(java.util.function.Consumer)
+	 */
+	public boolean tryAdvance(Consumer<? super byte[]> action) {
+		if(finished) {
+			return false;
+		}
+
+		if(started ? engine.nextTour() : engine.runKnightBoard(xPos, yPos)) {
+			started = true;
+			action.accept(engine.getDirections());
+			return true;
+		}
+		started = true;
+		finished = true;
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Spliterator#trySplit()
+	 */
+	public Spliterator<byte[]> trySplit() {
+		// the search goes on from the last tour, so it can't be shared out
+		return null;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Spliterator#estimateSize()
+	 */
+	public long estimateSize() {
+		return finished ? 0 : Long.MAX_VALUE;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Spliterator#characteristics()
+	 */
+	public int characteristics() {
+		return ORDERED | NONNULL | DISTINCT;
+	}
+}
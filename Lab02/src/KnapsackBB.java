@@ -0,0 +1,424 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Solves the knapsack by branch and bound, for capacities far too large for
+ * a table. The items are sorted by value per unit of weight, densest first,
+ * and each node of the search decides one item, taking it before leaving it.
+ * A node is bounded by the greedy fractional (Dantzig) relaxation: the items
+ * after it are taken densest first until one doesn't fit, and that one is
+ * taken in part. No load below the node can be worth more, so a node whose
+ * bound is no better than the best load found so far is pruned.
+ *
+ * The nodes are searched depth first, or with -best the node with the
+ * highest bound first. With more than one thread, the top of the tree is
+ * expanded into subtrees which are searched on a pool of workers, all of
+ * them pruning against the same best value.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class KnapsackBB {
+	private static int[] weights;	// the weight of each item, densest first
+	private static int[] values;	// the value of each item, densest first
+	private static int[] numbers;	// the item number of each item, densest first
+	private static long[] prefixWeight;	// the weight of the items before each, densest first
+	private static long[] prefixValue;	// the value of the items before each, densest first
+	private static AtomicLong bestValue;	// the best value found so far by any worker
+	private static boolean[] bestTaken;	// the items taken for the best value, densest first
+
+	public static void main(String[] args) {
+		int numItems;
+		int maxWeight;
+		String weightFile;
+		String valueFile;
+		boolean bestFirst;
+		int threads;
+
+
+		if(args.length < 4) {
+			printUsage();
+			return;
+		}
+
+		bestFirst = false;
+		threads = 1;
+		try {
+			numItems = Integer.parseInt(args[0]);
+			maxWeight = Integer.parseInt(args[1]);
+			for(int index = 4; index < args.length; index++) {
+				switch (args[index]) {
+				case "-best":
+					bestFirst = true;
+					break;
+				case "-threads":
+					threads = Integer.parseInt(args[++index]);
+					break;
+				default:
+					printUsage();
+					return;
+				}
+			}
+		} catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			printUsage();
+			return;
+		}
+
+		if(numItems < 0 || maxWeight < 0 || threads < 1) {
+			printUsage();
+			return;
+		}
+		weightFile = args[2];
+		valueFile = args[3];
+
+		try {
+			knapsack(numItems, maxWeight, weightFile, valueFile, bestFirst, threads);
+		} catch (FileNotFoundException e) {
+			printUsage();
+			return;
+		} catch (InterruptedException e) {
+			System.out.println("Search interrupted!");
+			return;
+		}
+
+	}
+
+	/**
+	 * Returns a print usage message if the command line arguments do not meet program
+	 * requirements.
+	 *
+	 */
+	private static void printUsage() {
+		System.out.println("usage: $ java KnapsackBB n W w.txt v.txt [-best] [-threads t]\n"
+				+ "	    n: the number of items\n"
+				+ "	    W: the maximum weight the Knapsack can carry\n"
+				+ "	w.txt: a file containing each individual items' weight (one weight per line)\n"
+				+ "        v.txt: a file containing each individual items' value (one value per line)\n"
+				+ "        -best: search the node with the highest bound first instead of depth first\n"
+				+ "   -threads t: search subtrees on t threads (default 1)");
+		return;
+	}
+
+	/**
+	 * Constructs a knapsack with arguments taken from the command line, sorts the
+	 * items densest first and searches them by branch and bound. Prints the
+	 * results to the console.
+	 *
+	 * @param numItems	- the number of items to take from the items files
+	 * @param maxWeight	- the maximum weight the knapsack can hold
+	 * @param weightFileName - the file item weights are taken from
+	 * @param valueFileName	- the file item values are taken from
+	 * @param bestFirst	- true to search the node with the highest bound first
+	 * @param threads	- the number of workers searching subtrees
+	 *
+	 * @throws FileNotFoundException
+	 * @throws InterruptedException if interrupted while waiting for a worker
+	 */
+	private static void knapsack(int numItems, int maxWeight, String weightFileName, String valueFileName,
+			boolean bestFirst, int threads) throws FileNotFoundException, InterruptedException {
+		int[] fileWeights = new int[numItems];
+		int[] fileValues = new int[numItems];
+		File weightFile = new File(weightFileName);
+		File valueFile = new File(valueFileName);
+
+		Scanner weightScan = new Scanner(weightFile);
+		Scanner valueScan = new Scanner(valueFile);
+
+		int i = 0;
+		while(weightScan.hasNextLine() && valueScan.hasNextLine() && i < numItems) {
+			String weightString = weightScan.nextLine().trim();
+			String valueString = valueScan.nextLine().trim();
+			fileWeights[i] = Integer.parseInt(weightString);
+			fileValues[i] = Integer.parseInt(valueString);
+			i++;
+		}
+		weightScan.close();
+		valueScan.close();
+
+		sortByDensity(fileWeights, fileValues);
+		bestValue = new AtomicLong(0);
+		bestTaken = new boolean[numItems];
+
+		Worker root = new Worker(0, maxWeight, 0, new boolean[numItems], bestFirst);
+		long[] counts = threads > 1 ? searchParallel(root, threads) : root.search();
+
+		// the items of the best load, by item number
+		List<Integer> knapsack = new ArrayList<Integer>();
+		long weight = 0;
+		for(int item = 0; item < numItems; item++) {
+			if(bestTaken[item]) {
+				knapsack.add(numbers[item]);
+				weight += weights[item];
+			}
+		}
+		knapsack.sort(null);
+
+		String optimalSolution = "";
+		for(int index = 0; index < knapsack.size(); index++) {
+			optimalSolution += (index > 0 ? "," : "") + knapsack.get(index);
+		}
+
+		String returnString = "Optimal Solution:\n{" + optimalSolution + "}\n"
+				+ "Total Weight: " + weight + "\n" + "Optimal Value: " + bestValue.get() + "\n"
+				+ "Nodes explored: " + counts[0] + "\n" + "Nodes pruned: " + counts[1];
+
+		System.out.println(returnString);
+		return;
+	}
+
+	/**
+	 * Sorts the items by value per unit of weight, densest first, keeping the
+	 * order of the files between items of the same density, and sums the
+	 * weights and values before each item for the bounds
+	 *
+	 * @param fileWeights	- the weight of each item, by item number
+	 * @param fileValues	- the value of each item, by item number
+	 */
+	private static void sortByDensity(int[] fileWeights, int[] fileValues) {
+		Integer[] order = new Integer[fileWeights.length];
+
+		for(int item = 0; item < order.length; item++) {
+			order[item] = item;
+		}
+		// a/b > c/d exactly when a*d > c*b, without rounding
+		Arrays.sort(order, (first, second) -> Long.compare((long) fileValues[second] * fileWeights[first],
+				(long) fileValues[first] * fileWeights[second]));
+
+		weights = new int[order.length];
+		values = new int[order.length];
+		numbers = new int[order.length];
+		prefixWeight = new long[order.length+1];
+		prefixValue = new long[order.length+1];
+		for(int item = 0; item < order.length; item++) {
+			weights[item] = fileWeights[order[item]];
+			values[item] = fileValues[order[item]];
+			numbers[item] = order[item];
+			prefixWeight[item+1] = prefixWeight[item] + weights[item];
+			prefixValue[item+1] = prefixValue[item] + values[item];
+		}
+	}
+
+	/**
+	 * Bounds the value of any load below a node by the greedy fractional
+	 * relaxation. The items from the node on are taken densest first while they
+	 * fit, found by a binary search of the weight sums, and the first one that
+	 * doesn't fit is taken in the fraction that fills the knapsack.
+	 *
+	 * @param level	- the next item to decide, densest first
+	 * @param weightLeft	- the weight remaining in the knapsack
+	 * @param value	- the value of the items taken so far
+	 * @return the largest value any load below the node can have
+	 */
+	private static long bound(int level, long weightLeft, long value) {
+		int low = level;
+		int high = weights.length;
+
+		// the last item, from level, up to which every item fits
+		while(low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if(prefixWeight[mid] - prefixWeight[level] <= weightLeft) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		value += prefixValue[low] - prefixValue[level];
+		if(low < weights.length) {
+			weightLeft -= prefixWeight[low] - prefixWeight[level];
+			value += weightLeft * values[low] / weights[low];
+		}
+		return value;
+	}
+
+	/**
+	 * Keeps a load if it is worth more than the best one found so far. The
+	 * workers read the best value without locking, to prune against it.
+	 *
+	 * @param value	- the value of the load
+	 * @param taken	- the items taken, densest first
+	 */
+	private static synchronized void offer(long value, boolean[] taken) {
+		if(value > bestValue.get()) {
+			bestTaken = taken.clone();
+			bestValue.set(value);
+		}
+	}
+
+	/**
+	 * Expands the top of the tree into subtrees and searches them on a pool of
+	 * workers, about eight per thread, densest first so that good loads are
+	 * found early for the rest to prune against
+	 *
+	 * @param root	- the worker at the root of the tree
+	 * @param threads	- the number of workers searching at once
+	 * @return the nodes explored and pruned, over the top of the tree and every subtree
+	 * @throws InterruptedException if interrupted while waiting for a worker
+	 */
+	private static long[] searchParallel(Worker root, int threads) throws InterruptedException {
+		List<Worker> subtrees = new ArrayList<Worker>();
+		List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		int splitDepth = Math.min(weights.length, 32 - Integer.numberOfLeadingZeros(threads * 8 - 1));
+		long[] retVal;
+
+		retVal = root.split(0, root.weightLeft, 0, splitDepth, subtrees);
+		try {
+			for(Worker subtree : subtrees) {
+				results.add(pool.submit(subtree::search));
+			}
+			for(Future<long[]> result : results) {
+				long[] counts = result.get();
+				retVal[0] += counts[0];
+				retVal[1] += counts[1];
+			}
+		} catch(ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		return retVal;
+	}
+
+	/**
+	 * Searches one subtree, counting the nodes it explores and prunes
+	 *
+	 */
+	private static class Worker {
+		private int level;
+		private long weightLeft;
+		private long value;
+		private boolean[] taken;
+		private boolean bestFirst;
+		private long explored;
+		private long pruned;
+
+		private Worker(int level, long weightLeft, long value, boolean[] taken, boolean bestFirst) {
+			this.level = level;
+			this.weightLeft = weightLeft;
+			this.value = value;
+			this.taken = taken;
+			this.bestFirst = bestFirst;
+		}
+
+		private long[] search() {
+			if(bestFirst) {
+				bestFirst();
+			} else {
+				depthFirst(level, weightLeft, value);
+			}
+			return new long[] {explored, pruned};
+		}
+
+		private void depthFirst(int level, long weightLeft, long value) {
+			explored++;
+			if(value > bestValue.get()) {
+				offer(value, taken);
+			}
+			if(level == weights.length) {
+				return;
+			}
+			if(bound(level, weightLeft, value) <= bestValue.get()) {
+				pruned++;
+				return;
+			}
+
+			if(weights[level] <= weightLeft) {
+				taken[level] = true;
+				depthFirst(level+1, weightLeft - weights[level], value + values[level]);
+				taken[level] = false;
+			}
+			depthFirst(level+1, weightLeft, value);
+		}
+
+		private void bestFirst() {
+			PriorityQueue<Node> open = new PriorityQueue<Node>((first, second) -> Long.compare(second.bound,
+					first.bound));
+
+			open.add(new Node(null, level, weightLeft, value, false));
+			while(!open.isEmpty()) {
+				Node node = open.poll();
+
+				explored++;
+				if(node.value > bestValue.get()) {
+					boolean[] path = taken.clone();
+					for(Node step = node; step.parent != null; step = step.parent) {
+						path[step.level-1] = step.took;
+					}
+					offer(node.value, path);
+				}
+				if(node.level == weights.length) {
+					continue;
+				}
+				if(node.bound <= bestValue.get()) {
+					pruned++;
+					continue;
+				}
+
+				if(weights[node.level] <= node.weightLeft) {
+					open.add(new Node(node, node.level+1, node.weightLeft - weights[node.level],
+							node.value + values[node.level], true));
+				}
+				open.add(new Node(node, node.level+1, node.weightLeft, node.value, false));
+			}
+		}
+
+		private long[] split(int level, long weightLeft, long value, int depth, List<Worker> subtrees) {
+			if(depth == 0) {
+				subtrees.add(new Worker(level, weightLeft, value, taken.clone(), bestFirst));
+				return new long[] {explored, pruned};
+			}
+
+			explored++;
+			if(value > bestValue.get()) {
+				offer(value, taken);
+			}
+			if(level == weights.length) {
+				return new long[] {explored, pruned};
+			}
+			if(bound(level, weightLeft, value) <= bestValue.get()) {
+				pruned++;
+				return new long[] {explored, pruned};
+			}
+
+			if(weights[level] <= weightLeft) {
+				taken[level] = true;
+				split(level+1, weightLeft - weights[level], value + values[level], depth-1, subtrees);
+				taken[level] = false;
+			}
+			return split(level+1, weightLeft, value, depth-1, subtrees);
+		}
+	}
+
+	/**
+	 * A node of the best first search, linked to its parent so the items taken
+	 * on its path can be read back when it holds the best load
+	 *
+	 */
+	private static class Node {
+		private Node parent;
+		private int level;
+		private long weightLeft;
+		private long value;
+		private boolean took;
+		private long bound;
+
+		private Node(Node parent, int level, long weightLeft, long value, boolean took) {
+			this.parent = parent;
+			this.level = level;
+			this.weightLeft = weightLeft;
+			this.value = value;
+			this.took = took;
+			bound = KnapsackBB.bound(level, weightLeft, value);
+		}
+	}
+}
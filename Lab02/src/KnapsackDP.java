@@ -1,17 +1,19 @@
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Scanner;
 
 public class KnapsackDP {
-	private final static boolean TOOK = true;
-	private final static boolean LEFT = false;
 	private static int numCalls;
-	private static Item[] items;
+	private static int[] weights;	// the weight of each item, by item number
+	private static int[] values;	// the value of each item, by item number
 	private static LinkedList<Integer> knapsack;
-	private static TableObject[][] truthTable;
+	private static long[] tookBits;	// one bit per item and weight, set if the item was taken
+	private static boolean linear;	// keep only rows of the table, never the whole of it
+	private static int[] forwardRow;	// optimal values of the first half of a range of items
+	private static int[] backwardRow;	// optimal values of the second half of a range of items
 
 	public static void main(String[] args) {
 		int numItems;
@@ -20,7 +22,7 @@ public class KnapsackDP {
 		String valueFile;
 
 
-		if(args.length != 4) {
+		if(args.length != 4 && !(args.length == 5 && args[4].equals("-linear"))) {
 			printUsage();
 			return;
 		}
@@ -34,6 +36,7 @@ public class KnapsackDP {
 		}
 
 		knapsack = new LinkedList<Integer>();
+		linear = args.length == 5;
 		weightFile = args[2];
 		valueFile = args[3];
 
@@ -52,17 +55,32 @@ public class KnapsackDP {
 	 * 
 	 */
 	private static void printUsage() {
-		System.out.println("usage: $ java KnapsackRec n W w.txt v.txt\n"
+		System.out.println("usage: $ java KnapsackDP n W w.txt v.txt [-linear]\n"
 				+ "	    n: the number of items\n"
 				+ "	    W: the maximum weight the Knapsack can carry\n"
 				+ "	w.txt: a file containing each individual items' weight (one weight per line)\n"
-				+ "        v.txt: a file containing each individual items' value (one value per line)");
+				+ "        v.txt: a file containing each individual items' value (one value per line)\n"
+				+ "      -linear: keep a few rows of W values instead of the n by W table, and find the\n"
+				+ "               items by splitting them in halves (counted as recursive calls)");
 		return;
 	}
 	
+	/**
+	 * Constructs a knapsack with arguments taken from the command line, fills the
+	 * table of optimal values, and walks back through the items taken to find the
+	 * optimal load. Prints the results to the console.
+	 * 
+	 * @param numItems	- the number of items to take from the items files
+	 * @param maxWeight	- the maximum weight the knapsack can hold
+	 * @param weightFileName - the file item weights are taken from
+	 * @param valueFileName	- the file item values are taken from
+	 * 
+	 * @throws FileNotFoundException
+	 */
 	private static void knapsack(int numItems, int maxWeight, String weightFileName, String valueFileName) throws FileNotFoundException {
 		numCalls = 0;		
-		items = new Item[numItems];
+		weights = new int[numItems];
+		values = new int[numItems];
 		File weightFile = new File(weightFileName);
 		File valueFile = new File(valueFileName);
 
@@ -73,21 +91,38 @@ public class KnapsackDP {
 		while(weightScan.hasNextLine() && valueScan.hasNextLine() && i < numItems) {
 			String weightString = weightScan.nextLine().trim();
 			String valueString = valueScan.nextLine().trim();
-			items[i] = new Item(Integer.parseInt(valueString), Integer.parseInt(weightString), i);
+			weights[i] = Integer.parseInt(weightString);
+			values[i] = Integer.parseInt(valueString);
 			i++;
 		}
-		
-		int value = fillKnapsack(numItems, maxWeight);
-		int weight = 0;
+		weightScan.close();
+		valueScan.close();
 
-		Collections.sort(knapsack);
+		// one bit for every cell of the table has to fit in a single array
+		if(!linear && (long) numItems * (maxWeight+1) > (long) Integer.MAX_VALUE * 64) {
+			System.out.println("The table of " + numItems + " items by " + (maxWeight+1)
+					+ " weights is too large, try -linear");
+			return;
+		}
 		
-		String optimalSolution = returnOptimalSolution(numItems, maxWeight);
+		int value;
+		String optimalSolution;
+		if(linear) {
+			forwardRow = new int[maxWeight+1];
+			backwardRow = new int[maxWeight+1];
+			value = fillRow(forwardRow, 0, numItems, maxWeight);
+			splitKnapsack(0, numItems, maxWeight);
+			optimalSolution = returnSolutionString();
+		} else {
+			value = fillKnapsack(numItems, maxWeight);
+			optimalSolution = returnOptimalSolution(numItems, maxWeight);
+		}
+		int weight = 0;
 		
 		Iterator<Integer> it = knapsack.iterator();
 		while(it.hasNext()) {
 			int val = it.next();
-			weight += items[val].getWeight();
+			weight += weights[val];
 		}
 
 		String returnString = "Optimal Solution:\n{" + optimalSolution + "}\n"
@@ -95,65 +130,156 @@ public class KnapsackDP {
 				+ "Number of recursive calls: " + numCalls;
 
 		System.out.println(returnString);
-
-		weightScan.close();
-		valueScan.close();
 		return;
 	}
 	
+	/**
+	 * Fills the table of optimal values one item at a time. Only the row of the
+	 * items so far is kept, as each row depends on nothing but the one before it,
+	 * and it is updated from the heaviest weight down so every cell still reads
+	 * the last row's values. Whether each item was taken at each weight is kept
+	 * as a single bit, to walk back through the table afterwards.
+	 * 
+	 * @param numItems	- the number of items
+	 * @param maxWeight	- the maximum weight the knapsack can hold
+	 * @return the optimal value of a knapsack of maxWeight
+	 */
 	private static int fillKnapsack(int numItems, int maxWeight) {
-		int xMax = numItems+1;
-		int yMax = maxWeight+1;
-		truthTable = new TableObject[xMax][yMax];
+		int[] row = new int[maxWeight+1];
+		long width = maxWeight+1;
+		tookBits = new long[(int) ((numItems * width + 63) >>> 6)];
 		
-		for(int xIndex = 0; xIndex < xMax; xIndex++) {
-			for(int yIndex = 0; yIndex < yMax; yIndex++) {
-				if(xIndex == 0 || yIndex == 0) {
-					truthTable[xIndex][yIndex] = new TableObject(0, LEFT);
-				} else if(items[xIndex-1].getWeight() > yIndex) {
-					truthTable[xIndex][yIndex] = new TableObject(getTotal(xIndex-1,yIndex), LEFT);
-				} else {
-					int valueOne = getTotal(xIndex-1, yIndex);
-					int valueTwo = getTotal(xIndex-1, yIndex-items[xIndex-1].getWeight())+items[xIndex-1].getValue();
-					
-					if(valueOne > valueTwo) {
-						truthTable[xIndex][yIndex] = new TableObject(valueOne, LEFT);
-					} else {
-						truthTable[xIndex][yIndex] = new TableObject(valueTwo, TOOK);
-					}					
+		for(int item = 0; item < numItems; item++) {
+			int itemWeight = weights[item];
+			int itemValue = values[item];
+			long rowStart = item * width;
+			
+			// lighter weights can't hold the item, so they leave it as the last row did
+			for(int yIndex = maxWeight; yIndex >= itemWeight; yIndex--) {
+				int valueTwo = row[yIndex-itemWeight] + itemValue;
+				
+				// ties take the item
+				if(valueTwo >= row[yIndex]) {
+					row[yIndex] = valueTwo;
+					long bit = rowStart + yIndex;
+					tookBits[(int) (bit >>> 6)] |= 1L << bit;
 				}
 			}
 		}
 		
-		System.out.println("finished");
+		return row[maxWeight];
+	}
+	
+	/**
+	 * Walks back from the last item and the full weight, taking each item that was
+	 * taken at the weight left, and returns the items in the knapsack as a single
+	 * string.
+	 * 
+	 * @param numItems	- the number of items
+	 * @param maxWeight	- the maximum weight the knapsack can hold
+	 * @return the String representation of the items in the knapsack.
+	 */
+	private static String returnOptimalSolution(int numItems, int maxWeight) {
+		int yIndex = maxWeight;
+		
+		for(int item = numItems-1; item >= 0; item--) {
+			long bit = item * (long) (maxWeight+1) + yIndex;
+			if((tookBits[(int) (bit >>> 6)] & 1L << bit) != 0) {
+				knapsack.addFirst(item);
+				yIndex -= weights[item];
+			}
+		}
 		
-		return truthTable[xMax-1][yMax-1].getOptimalValue();
+		return returnSolutionString();
 	}
 	
-	private static int getTotal(int xIndex, int yIndex) {
-		return truthTable[xIndex][yIndex].getOptimalValue();
+	/**
+	 * Fills a row of optimal values for a range of items, each cell the best value
+	 * of those items that fits in its weight. The items can go in either order,
+	 * so the same method fills the rows of both halves of a range.
+	 * 
+	 * @param row	- the row to fill, at least capacity+1 long
+	 * @param firstItem	- the first item of the range
+	 * @param endItem	- one past the last item of the range
+	 * @param capacity	- the heaviest weight of the row
+	 * @return the optimal value of the items at the full capacity
+	 */
+	private static int fillRow(int[] row, int firstItem, int endItem, int capacity) {
+		Arrays.fill(row, 0, capacity+1, 0);
+		
+		for(int item = firstItem; item < endItem; item++) {
+			int itemWeight = weights[item];
+			int itemValue = values[item];
+			
+			for(int yIndex = capacity; yIndex >= itemWeight; yIndex--) {
+				if(row[yIndex-itemWeight] + itemValue >= row[yIndex]) {
+					row[yIndex] = row[yIndex-itemWeight] + itemValue;
+				}
+			}
+		}
+		return row[capacity];
 	}
 	
-	private static String returnOptimalSolution(int numItems, int maxWeight) {
-		String optimalSolution = "";
-		int xIndex = 1;
-		int yIndex = maxWeight;
+	/**
+	 * Finds the optimal items of a range in linear space, in the manner of
+	 * Hirschberg. The range is split in half and a row is filled for each half,
+	 * and the best split of the capacity between the halves is where the first
+	 * half's value at a weight plus the second half's value at the rest is largest.
+	 * Each half is then solved the same way with its share of the capacity. Each
+	 * level of the recursion fills rows for every item once, with capacities
+	 * adding up to no more than the full one, so the whole search is still on the
+	 * order of the items times the weight, and only the two rows are kept.
+	 * 
+	 * @param firstItem	- the first item of the range
+	 * @param endItem	- one past the last item of the range
+	 * @param capacity	- the weight the range's items have to fit in
+	 */
+	private static void splitKnapsack(int firstItem, int endItem, int capacity) {
+		int midItem = (firstItem + endItem) >>> 1;
+		int bestSplit = 0;
+		
+		numCalls++;
 		
-		while(xIndex < numItems+1) {
-			if(truthTable[xIndex][yIndex].getTookIt() == 1) {
-				knapsack.add(xIndex);
+		// a single item goes in if it fits, which is optimal for one item
+		if(endItem - firstItem == 1) {
+			if(weights[firstItem] <= capacity) {
+				knapsack.add(firstItem);
 			}
-			xIndex++;
+			return;
+		} else if(endItem - firstItem < 1) {
+			return;
 		}
 		
+		fillRow(forwardRow, firstItem, midItem, capacity);
+		fillRow(backwardRow, midItem, endItem, capacity);
+		for(int yIndex = 1; yIndex <= capacity; yIndex++) {
+			if(forwardRow[yIndex] + backwardRow[capacity-yIndex]
+					> forwardRow[bestSplit] + backwardRow[capacity-bestSplit]) {
+				bestSplit = yIndex;
+			}
+		}
+		
+		// the first half is solved first, so the items are added in order
+		splitKnapsack(firstItem, midItem, bestSplit);
+		splitKnapsack(midItem, endItem, capacity-bestSplit);
+	}
+	
+	/**
+	 * Iterates through the list of items in the knapsack, and returns them as
+	 * a single string.
+	 * 
+	 * @return optimalSolution - the String representation of the items in the knapsack.
+	 */
+	private static String returnSolutionString() {
+		String optimalSolution = "";
 		Iterator<Integer> it = knapsack.iterator();
 		
-		for(int i = 0; i < knapsack.size()-1; i++) {
-			int next = it.next();
-			optimalSolution += items[next].getNumber() + ",";
+		while(it.hasNext()) {
+			optimalSolution += it.next();
+			if(it.hasNext()) {
+				optimalSolution += ",";
+			}
 		}
-				
-		optimalSolution += items[it.next()].getNumber();
 		
 		return optimalSolution;
 		
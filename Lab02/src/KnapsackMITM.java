@@ -0,0 +1,281 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
+
+/**
+ * Solves the knapsack by meeting in the middle, for a few items (no more
+ * than 50) with weights and capacities of any size, in a time that depends
+ * only on the number of items. The items are split in two halves. Every
+ * subset of the first half is listed by weight, merging in one item at a
+ * time, and a subset that weighs at least as much as a lighter one but is
+ * worth no more is dropped, so the values rise with the weights. Every
+ * subset of the second half is then visited in turn, and the most
+ * valuable first half subset that fits beside it is found by a binary
+ * search of the weights. The items are chosen walking back from the last
+ * one, as the table solvers do: an item is taken when the best load of
+ * the items before it, with room left for it, is worth at least as much
+ * with it as without it, so an optimum worth the same as another comes
+ * out as the same items.
+ *
+ * @author Jason Egbert
+ *
+ */
+public class KnapsackMITM {
+	private final static int MAX_ITEMS = 50;
+	private static long[] weights;	// the weight of each item, by item number
+	private static long[] values;	// the value of each item, by item number
+	private static long[] listWeight;	// the weight of each kept subset of the first half, lightest first
+	private static long[] listValue;	// the value of each kept subset of the first half
+	private static int listSize;	// the number of kept subsets of the first half
+	private static long numSubsets;	// the subsets listed or visited
+
+	public static void main(String[] args) {
+		int numItems;
+		long maxWeight;
+		String weightFile;
+		String valueFile;
+
+
+		if(args.length != 4) {
+			printUsage();
+			return;
+		}
+
+		try {
+			numItems = Integer.parseInt(args[0]);
+			maxWeight = Long.parseLong(args[1]);
+		} catch(NumberFormatException e) {
+			printUsage();
+			return;
+		}
+
+		if(numItems < 0 || numItems > MAX_ITEMS || maxWeight < 0) {
+			printUsage();
+			return;
+		}
+		weightFile = args[2];
+		valueFile = args[3];
+
+		try {
+			knapsack(numItems, maxWeight, weightFile, valueFile);
+		} catch (FileNotFoundException e) {
+			printUsage();
+			return;
+		}
+
+	}
+
+	/**
+	 * Returns a print usage message if the command line arguments do not meet program
+	 * requirements.
+	 *
+	 */
+	private static void printUsage() {
+		System.out.println("usage: $ java KnapsackMITM n W w.txt v.txt\n"
+				+ "	    n: the number of items, at most " + MAX_ITEMS + "\n"
+				+ "	    W: the maximum weight the Knapsack can carry, up to 2^63-1\n"
+				+ "	w.txt: a file containing each individual items' weight (one weight per line)\n"
+				+ "        v.txt: a file containing each individual items' value (one value per line)\n"
+				+ "   the first half's subsets take up to 32 bytes each (2^25 of them for 50 items),\n"
+				+ "   so raise -Xmx for more than about 40 items");
+		return;
+	}
+
+	/**
+	 * Constructs a knapsack with arguments taken from the command line, lists the
+	 * subsets of the first half of the items and decides each item from the last
+	 * one back, matching subsets of the second half against the list while the
+	 * items are in the second half and listing the items before each one in the
+	 * first half. Prints the results to the console.
+	 *
+	 * @param numItems	- the number of items to take from the items files
+	 * @param maxWeight	- the maximum weight the knapsack can hold
+	 * @param weightFileName - the file item weights are taken from
+	 * @param valueFileName	- the file item values are taken from
+	 *
+	 * @throws FileNotFoundException
+	 */
+	private static void knapsack(int numItems, long maxWeight, String weightFileName, String valueFileName) throws FileNotFoundException {
+		numSubsets = 0;
+		weights = new long[numItems];
+		values = new long[numItems];
+		File weightFile = new File(weightFileName);
+		File valueFile = new File(valueFileName);
+
+		Scanner weightScan = new Scanner(weightFile);
+		Scanner valueScan = new Scanner(valueFile);
+
+		int i = 0;
+		while(weightScan.hasNextLine() && valueScan.hasNextLine() && i < numItems) {
+			String weightString = weightScan.nextLine().trim();
+			String valueString = valueScan.nextLine().trim();
+			weights[i] = Long.parseLong(weightString);
+			values[i] = Long.parseLong(valueString);
+			i++;
+		}
+		weightScan.close();
+		valueScan.close();
+
+		int half = numItems / 2;
+		listFirstHalf(half, maxWeight);
+		int kept = listSize;
+		long weightLeft = maxWeight;
+		long bestMask = 0;
+
+		// ties take the item, as the table solvers do
+		for(int item = numItems-1; item >= 0; item--) {
+			long itemWeight = weights[item];
+			boolean take;
+
+			if(item >= half) {
+				take = itemWeight <= weightLeft && bestValue(half, item, weightLeft-itemWeight) + values[item]
+						>= bestValue(half, item, weightLeft);
+			} else {
+				listFirstHalf(item, weightLeft);
+				take = itemWeight <= weightLeft && listValue[heaviestFit(weightLeft-itemWeight)] + values[item]
+						>= listValue[heaviestFit(weightLeft)];
+			}
+			if(take) {
+				bestMask |= 1L << item;
+				weightLeft -= itemWeight;
+			}
+		}
+
+		String optimalSolution = "";
+		long weight = 0;
+		long value = 0;
+		for(int item = 0; item < numItems; item++) {
+			if((bestMask & 1L << item) != 0) {
+				optimalSolution += (optimalSolution.isEmpty() ? "" : ",") + item;
+				weight += weights[item];
+				value += values[item];
+			}
+		}
+
+		String returnString = "Optimal Solution:\n{" + optimalSolution + "}\n"
+				+ "Total Weight: " + weight + "\n" + "Optimal Value: " + value + "\n"
+				+ "Subsets enumerated: " + numSubsets + "\n" + "Undominated subsets kept: " + kept;
+
+		System.out.println(returnString);
+		return;
+	}
+
+	/**
+	 * Lists the subsets of the first items by weight. Starting from the empty
+	 * subset, each item is merged in by walking the list and the list with the
+	 * item added to every subset side by side, both already lightest first. A
+	 * subset is kept only if it fits and is worth more than every lighter subset
+	 * kept before it, so the list stays sorted by weight and value at once.
+	 *
+	 * @param half	- the number of items to list, counted from the first
+	 * @param maxWeight	- the maximum weight the knapsack can hold
+	 */
+	private static void listFirstHalf(int half, long maxWeight) {
+		long[] nextWeight;
+		long[] nextValue;
+
+		listWeight = new long[] {0};
+		listValue = new long[] {0};
+		listSize = 1;
+		numSubsets++;
+		for(int item = 0; item < half; item++) {
+			int without = 0;
+			int with = 0;
+			int nextSize = 0;
+
+			nextWeight = new long[listSize * 2];
+			nextValue = new long[listSize * 2];
+			while(without < listSize || with < listSize) {
+				long weight;
+				long value;
+
+				// the lighter of the next subset without the item and the next with it
+				if(with == listSize || without < listSize && listWeight[without] <= listWeight[with] + weights[item]) {
+					weight = listWeight[without];
+					value = listValue[without];
+					without++;
+				} else {
+					weight = listWeight[with] + weights[item];
+					value = listValue[with] + values[item];
+					with++;
+					numSubsets++;
+				}
+
+				if(weight <= maxWeight && (nextSize == 0 || value > nextValue[nextSize-1])) {
+					nextWeight[nextSize] = weight;
+					nextValue[nextSize] = value;
+					nextSize++;
+				}
+			}
+			listWeight = nextWeight;
+			listValue = nextValue;
+			listSize = nextSize;
+		}
+	}
+
+	/**
+	 * Visits every subset of the second half items before an item, one item
+	 * changing at a time in Gray code order, and pairs each one that fits with
+	 * the heaviest listed subset that fits beside it, which is also the most
+	 * valuable
+	 *
+	 * @param half	- the number of items in the first half
+	 * @param end	- the item the subsets stop before
+	 * @param maxWeight	- the weight the load has to fit in
+	 * @return the value of the most valuable load of the items before end
+	 */
+	private static long bestValue(int half, int end, long maxWeight) {
+		long count = 1L << (end - half);
+		long weight = 0;
+		long value = 0;
+		long mask = 0;
+		long retVal = 0;
+
+		for(long step = 0; step < count; step++) {
+			// the item that changes from the last subset to this one
+			if(step > 0) {
+				int item = half + Long.numberOfTrailingZeros(step);
+				mask ^= 1L << item;
+				if((mask & 1L << item) != 0) {
+					weight += weights[item];
+					value += values[item];
+				} else {
+					weight -= weights[item];
+					value -= values[item];
+				}
+			}
+			numSubsets++;
+			if(weight > maxWeight) {
+				continue;
+			}
+
+			int match = heaviestFit(maxWeight - weight);
+			if(value + listValue[match] > retVal) {
+				retVal = value + listValue[match];
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Finds the heaviest listed subset within a weight. The empty subset is
+	 * always listed, so there is one.
+	 *
+	 * @param weightLeft	- the weight left beside a subset of the second half
+	 * @return the index of the subset in the list
+	 */
+	private static int heaviestFit(long weightLeft) {
+		int low = 0;
+		int high = listSize - 1;
+
+		while(low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if(listWeight[mid] <= weightLeft) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+}
@@ -1,5 +1,6 @@
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -9,6 +10,8 @@ public class KnapsackRec {
 	private static int numCalls;
 	private static Item[] items;
 	private static LinkedList<Integer> knapsack;
+	private static MemoTable memo;	// the value of each state reached, null unless -memo is given
+	private static Chain taken;	// the items of the load the last call of fillKnapsack found, last item first
 
 	public static void main(String[] args) {
 		int numItems;
@@ -17,7 +20,7 @@ public class KnapsackRec {
 		String valueFile;
 
 
-		if(args.length != 4) {
+		if(args.length != 4 && !(args.length == 5 && args[4].equals("-memo"))) {
 			printUsage();
 			return;
 		}
@@ -31,6 +34,7 @@ public class KnapsackRec {
 		}
 
 		knapsack = new LinkedList<Integer>();
+		memo = args.length == 5 ? new MemoTable() : null;
 		weightFile = args[2];
 		valueFile = args[3];
 
@@ -49,11 +53,13 @@ public class KnapsackRec {
 	 * 
 	 */
 	private static void printUsage() {
-		System.out.println("usage: $ java KnapsackRec n W w.txt v.txt\n"
+		System.out.println("usage: $ java KnapsackRec n W w.txt v.txt [-memo]\n"
 				+ "	    n: the number of items\n"
 				+ "	    W: the maximum weight the Knapsack can carry\n"
 				+ "	w.txt: a file containing each individual items' weight (one weight per line)\n"
-				+ "        v.txt: a file containing each individual items' value (one value per line)");
+				+ "        v.txt: a file containing each individual items' value (one value per line)\n"
+				+ "        -memo: remember the value of every item number and weight left reached, so\n"
+				+ "               each is only computed once");
 		return;
 	}
 
@@ -86,15 +92,25 @@ public class KnapsackRec {
 			i++;
 		}
 		
-		int value = fillKnapsack(numItems, maxWeight);
+		int value;
+		if(memo != null) {
+			value = fillMemo(numItems, maxWeight);
+			takeItems(numItems, maxWeight);
+		} else {
+			value = fillKnapsack(numItems, maxWeight);
+			for(Chain item = taken; item != null; item = item.rest) {
+				knapsack.add(item.itemNumber);
+			}
+		}
 		int weight = 0;
 
 		Collections.sort(knapsack);
 		
+		// the list holds item numbers counted from 1
 		Iterator<Integer> it = knapsack.iterator();
 		while(it.hasNext()) {
 			int val = it.next();
-			weight += items[val].getWeight();
+			weight += items[val-1].getWeight();
 		}
 
 		String returnString = "Optimal Solution:\n{" + returnOptimalSolution() + "}\n"
@@ -110,7 +126,9 @@ public class KnapsackRec {
 
 	/**
 	 * Takes in the number of the next item to be checked, and the remaining weight in 
-	 * a knapsack, and finds the optimal load by value through recursion
+	 * a knapsack, and finds the optimal load by value through recursion. The items
+	 * of the load are left in taken, shared with the loads of the calls below, and
+	 * ties take the item.
 	 * 
 	 * @param itemNumber	- the number of the next item to be checked
 	 * @param weightLeft	- the weight remaining in the knapsack
@@ -123,38 +141,106 @@ public class KnapsackRec {
 
 		if(itemNumber == 0 || weightLeft == 0) {
 			knapsackValue = 0;
+			taken = null;
 		} else if(items[itemNumber-1].getWeight() > weightLeft) {
 			knapsackValue = fillKnapsack(itemNumber-1, weightLeft);
-			if(knapsack.contains(itemNumber)) {
-				knapsack.removeFirstOccurrence(itemNumber);				
-			}
 		} else {
-			LinkedList<Integer> resetList = knapsack;
 			int retValOne = fillKnapsack(itemNumber-1, weightLeft);
-			LinkedList<Integer> tmpList = knapsack;
-			knapsack = resetList;
+			Chain takenOne = taken;
 			int retValTwo = fillKnapsack((itemNumber-1), (weightLeft-items[itemNumber-1].getWeight())) + items[itemNumber-1].getValue();
 
-			knapsackValue = retValOne > retValTwo ? retValOne:retValTwo;
-
 			if(retValTwo >= retValOne) {
-				knapsack = resetList;
-				if(!knapsack.contains(itemNumber)) {
-					knapsack.add(itemNumber);
-				}
-			} else if( retValTwo < retValOne) {
-				knapsack = tmpList;
-				if(knapsack.contains(itemNumber)) {
-					knapsack.removeFirstOccurrence(itemNumber);									
-				}
+				knapsackValue = retValTwo;
+				taken = new Chain(itemNumber, taken);
 			} else {
-				knapsack = resetList;
-			}	
+				knapsackValue = retValOne;
+				taken = takenOne;
+			}
 		}		
 		
 		return knapsackValue;
 	}
 	
+	/**
+	 * Finds the optimal load by value through the same recursion as fillKnapsack,
+	 * but remembers the value of every item number and weight left it reaches, so
+	 * a state reached again is looked up rather than searched again. Only the
+	 * states actually reached are kept, which is far fewer than a full table when
+	 * the weights are large. The items are not tracked here, takeItems finds them
+	 * afterwards.
+	 * 
+	 * @param itemNumber	- the number of the next item to be checked
+	 * @param weightLeft	- the weight remaining in the knapsack
+	 * @return knapsackValue	- the optimal value of the items up to itemNumber in weightLeft
+	 */
+	private static int fillMemo(int itemNumber, int weightLeft) {
+		int knapsackValue;
+		
+		numCalls++;
+
+		if(itemNumber == 0 || weightLeft == 0) {
+			return 0;
+		}
+		knapsackValue = memo.get(itemNumber, weightLeft);
+		if(knapsackValue != MemoTable.MISSING) {
+			return knapsackValue;
+		}
+		
+		if(items[itemNumber-1].getWeight() > weightLeft) {
+			knapsackValue = fillMemo(itemNumber-1, weightLeft);
+		} else {
+			int retValOne = fillMemo(itemNumber-1, weightLeft);
+			int retValTwo = fillMemo(itemNumber-1, weightLeft-items[itemNumber-1].getWeight())
+					+ items[itemNumber-1].getValue();
+
+			knapsackValue = retValOne > retValTwo ? retValOne:retValTwo;
+		}
+		memo.put(itemNumber, weightLeft, knapsackValue);
+		
+		return knapsackValue;
+	}
+	
+	/**
+	 * Walks back from the last item and the full weight, adding each item that was
+	 * worth taking to the knapsack. Both states below a remembered state were
+	 * reached too, so every value it needs is already in the table.
+	 * 
+	 * @param numItems	- the number of items
+	 * @param maxWeight	- the maximum weight the knapsack can hold
+	 */
+	private static void takeItems(int numItems, int maxWeight) {
+		int weightLeft = maxWeight;
+		
+		for(int itemNumber = numItems; itemNumber > 0 && weightLeft > 0; itemNumber--) {
+			int itemWeight = items[itemNumber-1].getWeight();
+			
+			// ties take the item, as fillKnapsack does
+			if(itemWeight <= weightLeft && memoValue(itemNumber-1, weightLeft-itemWeight)
+					+ items[itemNumber-1].getValue() >= memoValue(itemNumber-1, weightLeft)) {
+				knapsack.add(itemNumber);
+				weightLeft -= itemWeight;
+			}
+		}
+	}
+	
+	/**
+	 * Looks up the value fillMemo found for a state
+	 * 
+	 * @param itemNumber	- the number of the next item to be checked
+	 * @param weightLeft	- the weight remaining in the knapsack
+	 * @return the optimal value of the state
+	 */
+	private static int memoValue(int itemNumber, int weightLeft) {
+		int retVal;
+		
+		if(itemNumber == 0 || weightLeft == 0) {
+			retVal = 0;
+		} else {
+			retVal = memo.get(itemNumber, weightLeft);
+		}
+		return retVal;
+	}
+	
 	/**
 	 * Iterates through the list of items in the knapsack, and returns them as
 	 * a single string.
@@ -166,13 +252,101 @@ public class KnapsackRec {
 		
 		Iterator<Integer> it = knapsack.iterator();
 		
-		for(int i = 0; i < knapsack.size()-1; i++) {
-			int next = it.next();
-			returnString += items[next].getNumber() + ",";
+		while(it.hasNext()) {
+			returnString += items[it.next()-1].getNumber();
+			if(it.hasNext()) {
+				returnString += ",";
+			}
 		}
-				
-		returnString += items[(int) it.next()].getNumber();
 		
 		return returnString;
 	}
+	
+	/**
+	 * One item of a load, linked to the rest of the load below it. Loads share
+	 * their tails, so taking an item costs one link whatever the load holds.
+	 * 
+	 */
+	private static class Chain {
+		private final int itemNumber;
+		private final Chain rest;
+
+		private Chain(int itemNumber, Chain rest) {
+			this.itemNumber = itemNumber;
+			this.rest = rest;
+		}
+	}
+	
+	/**
+	 * An open addressed hash table from an item number and weight left to the
+	 * optimal value of that state, kept in two primitive arrays and doubled when
+	 * it is half full.
+	 * 
+	 */
+	private static class MemoTable {
+		private static final int MISSING = Integer.MIN_VALUE;
+		private long[] keys;
+		private int[] stored;
+		private int size;
+
+		private MemoTable() {
+			keys = new long[1 << 10];
+			stored = new int[keys.length];
+			Arrays.fill(keys, -1);
+		}
+
+		private int get(int itemNumber, int weightLeft) {
+			long key = (long) itemNumber << 32 | weightLeft;
+			int mask = keys.length - 1;
+
+			for(int slot = slot(key, mask); keys[slot] != -1; slot = (slot+1) & mask) {
+				if(keys[slot] == key) {
+					return stored[slot];
+				}
+			}
+			return MISSING;
+		}
+
+		private void put(int itemNumber, int weightLeft, int value) {
+			long key = (long) itemNumber << 32 | weightLeft;
+			int mask = keys.length - 1;
+			int slot = slot(key, mask);
+
+			while(keys[slot] != -1 && keys[slot] != key) {
+				slot = (slot+1) & mask;
+			}
+			if(keys[slot] == -1) {
+				size++;
+			}
+			keys[slot] = key;
+			stored[slot] = value;
+			if(size * 2 > keys.length) {
+				grow();
+			}
+		}
+
+		private void grow() {
+			long[] oldKeys = keys;
+			int[] oldStored = stored;
+			int mask = oldKeys.length * 2 - 1;
+
+			keys = new long[oldKeys.length * 2];
+			stored = new int[keys.length];
+			Arrays.fill(keys, -1);
+			for(int index = 0; index < oldKeys.length; index++) {
+				if(oldKeys[index] != -1) {
+					int slot = slot(oldKeys[index], mask);
+					while(keys[slot] != -1) {
+						slot = (slot+1) & mask;
+					}
+					keys[slot] = oldKeys[index];
+					stored[slot] = oldStored[index];
+				}
+			}
+		}
+
+		private static int slot(long key, int mask) {
+			return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		}
+	}
 }
\ No newline at end of file